@@ -81,6 +81,7 @@ public class M extends NLS {
 	public static String CalculationWizardDescription;
 	public static String CanNotSaveParameter;
 	public static String Cancel;
+	public static String CancelingImport;
 	public static String CannotDelete;
 	public static String CannotDeleteFlowProperty;
 	public static String CannotDeleteMessage;
@@ -221,6 +222,7 @@ public class M extends NLS {
 	public static String DataSourceInformation;
 	public static String DataTreatment;
 	public static String Database;
+	public static String DatabaseBackupFailed;
 	public static String DatabaseContent;
 	public static String DatabaseImport;
 	public static String DatabaseImportDescription;
@@ -418,6 +420,8 @@ public class M extends NLS {
 	public static String ImportingKMLData;
 	public static String ImportingXMLData;
 	public static String IncludeCostCalculation;
+	public static String IndexRebuildFailed;
+	public static String IndexRebuildIncomplete;
 	public static String IndexingDatasets;
 	public static String Indicator;
 	public static String IndicatorBarChart;
@@ -2,10 +2,15 @@ package org.openlca.app.cloud.index;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
@@ -14,14 +19,64 @@ import org.openlca.cloud.api.RepositoryConfig;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.core.model.ModelType;
 import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-// NOT SYNCHRONIZED //
+/**
+ * The index of the differences between the local database and the
+ * repository. All operations on the index are synchronized on the index
+ * instance. Changes can be committed directly via {@link #commit()} or
+ * collected and written in batches via {@link #requestCommit()}.
+ */
 public class DiffIndex {
 
+	/** The maximum number of changes that are collected before a commit. */
+	private static final int BATCH_SIZE = 5000;
+
+	/** The maximum time in milliseconds before collected changes are written. */
+	private static final long COMMIT_DELAY = 1000;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final ScheduledExecutorService writer = Executors
+			.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "DiffIndex writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
 	private File file;
 	private DB db;
 	private Map<String, Diff> index;
-	private Map<String, Set<String>> changedTopLevelElements;
+
+	/**
+	 * Contains the keys of the changed elements prefixed with the name of the
+	 * model type they belong to (`<model type>/<ref. ID>`); used for fast
+	 * checks if there are changes of a model type.
+	 */
+	private NavigableMap<String, Boolean> changedTopLevelElements;
+
+	/**
+	 * Contains the keys of all changed diffs; used for getting the changes
+	 * without a full index scan.
+	 */
+	private Set<String> changedDiffs;
+
+	/**
+	 * Maps the keys of data sets to the keys of the data sets they reference;
+	 * used as cache for searching the references of changes. An entry is
+	 * removed when the respective data set is updated.
+	 */
+	private Map<String, Set<String>> references;
+
+	/**
+	 * Contains the flag `incomplete` when the index was cleared and not yet
+	 * fully rebuilt.
+	 */
+	private Map<String, Boolean> state;
+
+	private int pendingChanges;
+	private long firstPendingChange;
+	private ScheduledFuture<?> scheduledCommit;
 
 	public static DiffIndex getFor(RepositoryClient client) {
 		RepositoryConfig config = client.getConfig();
@@ -41,28 +96,80 @@ public class DiffIndex {
 
 	private void createDb(File file) {
 		db = DBMaker.fileDB(file).lockDisable().closeOnJvmShutdown().make();
+		boolean migrate = !db.exists("changedDiffKeys");
 		index = db.hashMap("diffIndex");
-		changedTopLevelElements = db.hashMap("changedTopLevelElements");
+		changedTopLevelElements = db.treeMap("changedTopLevel");
+		changedDiffs = db.hashSet("changedDiffKeys");
+		references = db.hashMap("references");
+		state = db.hashMap("state");
+		if (migrate) {
+			migrate();
+		}
+	}
+
+	/**
+	 * Creates the secondary indices for index files that were created by
+	 * older versions and removes the old set based index of the changed
+	 * top-level elements and the old map of the changed diffs.
+	 */
+	private void migrate() {
+		if (db.exists("changedTopLevelElements")) {
+			Map<String, Set<String>> old = db.hashMap("changedTopLevelElements");
+			for (Map.Entry<String, Set<String>> e : old.entrySet()) {
+				for (String refId : e.getValue()) {
+					changedTopLevelElements.put(e.getKey() + "/" + refId, true);
+				}
+			}
+			old.clear();
+		}
+		if (db.exists("changedDiffs")) {
+			db.hashMap("changedDiffs").clear();
+		}
+		for (Map.Entry<String, Diff> e : index.entrySet()) {
+			updateChangedDiffs(e.getKey(), e.getValue());
+		}
+		db.commit();
+	}
+
+	public synchronized void close() {
+		writer.shutdown();
+		closeDb();
 	}
 
-	public void close() {
+	private void closeDb() {
 		if (db.isClosed())
 			return;
-		db.commit();
+		commit();
 		db.close();
 	}
 
-	public void clear() {
-		close();
+	public synchronized void clear() {
+		closeDb();
 		File dir = file.getParentFile();
 		Dirs.delete(dir.toPath());
 		dir.mkdirs();
 		file = new File(dir, "indexfile");
 		createDb(file);
+		state.put("incomplete", true);
+		db.commit();
+	}
+
+	/**
+	 * Returns false if the index was cleared and not completely rebuilt
+	 * (e.g. because the rebuild was canceled). Such an index does not contain
+	 * all differences and needs to be rebuilt before it is used.
+	 */
+	public synchronized boolean isComplete() {
+		return !Boolean.TRUE.equals(state.get("incomplete"));
+	}
+
+	/** Marks a rebuilt index as complete. */
+	public synchronized void setComplete() {
+		state.remove("incomplete");
 		db.commit();
 	}
 
-	public void add(Dataset dataset, long localId) {
+	public synchronized void add(Dataset dataset, long localId) {
 		Diff diff = index.get(dataset.refId);
 		if (diff != null)
 			return;
@@ -71,12 +178,13 @@ public class DiffIndex {
 		index.put(dataset.refId, diff);
 	}
 
-	public void update(Dataset dataset, DiffType newType) {
+	public synchronized void update(Dataset dataset, DiffType newType) {
 		Diff diff = index.get(dataset.refId);
 		if (diff == null)
 			return;
 		if (diff.type == DiffType.DELETED && newType == DiffType.DELETED)
 			return;
+		references.remove(dataset.refId);
 		if (diff.type == DiffType.NEW && newType == DiffType.DELETED) {
 			// user added something and then deleted it again
 			remove(dataset.refId);
@@ -103,47 +211,78 @@ public class DiffIndex {
 			updateChangedTopLevelElements(type.name(), dataset.refId, newType);
 		}
 		index.put(dataset.refId, diff);
+		updateChangedDiffs(dataset.refId, diff);
 	}
 
 	private void updateChangedTopLevelElements(String type, String refId, DiffType newType) {
-		Set<String> elements = changedTopLevelElements.get(type);
-		if (elements == null)
-			elements = new HashSet<>();
+		String key = type + "/" + refId;
 		if (newType == DiffType.NO_DIFF)
-			elements.remove(refId);
-		else
-			elements.add(refId);
-		if (elements.isEmpty())
-			changedTopLevelElements.remove(type);
+			changedTopLevelElements.remove(key);
 		else
-			changedTopLevelElements.put(type, elements);
+			changedTopLevelElements.put(key, true);
 	}
 
-	public Diff get(String key) {
+	private void updateChangedDiffs(String key, Diff diff) {
+		if (diff == null || !diff.hasChanged()) {
+			changedDiffs.remove(key);
+		} else {
+			changedDiffs.add(key);
+		}
+	}
+
+	public synchronized Diff get(String key) {
 		return index.get(key);
 	}
 
-	public List<Diff> getChanged() {
+	public synchronized List<Diff> getChanged() {
 		List<Diff> changed = new ArrayList<>();
-		for (Diff diff : index.values())
-			if (diff.hasChanged())
+		for (String key : changedDiffs) {
+			Diff diff = index.get(key);
+			if (diff != null && diff.hasChanged())
 				changed.add(diff);
+		}
 		return changed;
 	}
 
-	public List<Diff> getAll() {
+	/** Returns the number of changed diffs in the index. */
+	public synchronized int getChangedCount() {
+		return changedDiffs.size();
+	}
+
+	public synchronized List<Diff> getAll() {
 		return new ArrayList<>(index.values());
 	}
 
-	public boolean hasChanged(ModelType type) {
-		Set<String> elements = changedTopLevelElements.get(type.name());
-		return elements != null && !elements.isEmpty();
+	public synchronized boolean hasChanged(ModelType type) {
+		String prefix = type.name() + "/";
+		String next = changedTopLevelElements.ceilingKey(prefix);
+		return next != null && next.startsWith(prefix);
+	}
+
+	/**
+	 * Returns the keys of the data sets that are referenced by the data set
+	 * with the given key, or null if they are not known.
+	 */
+	public synchronized Set<String> getReferences(String key) {
+		return references.get(key);
+	}
+
+	/**
+	 * Stores the keys of the data sets that are referenced by the data set
+	 * with the given key.
+	 */
+	public synchronized void putReferences(String key, Set<String> refs) {
+		if (key == null || refs == null || !index.containsKey(key))
+			return;
+		references.put(key, refs);
 	}
 
-	public void remove(String key) {
+	public synchronized void remove(String key) {
+		references.remove(key);
 		Diff diff = index.remove(key);
 		if (diff == null)
 			return;
+		changedDiffs.remove(key);
 		Dataset ds = diff.getDataset();
 		updateChangedTopLevelElements(ds.categoryType.name(), ds.refId, DiffType.NO_DIFF);
 		updateParents(diff, false);
@@ -178,8 +317,63 @@ public class DiffIndex {
 			updateChangedTopLevelElements(categoryType.name(), dataset.refId, DiffType.NO_DIFF);
 	}
 
-	public void commit() {
+	/** Directly writes all changes to the index file. */
+	public synchronized void commit() {
+		cancelScheduledCommit();
+		if (db.isClosed())
+			return;
+		long start = System.currentTimeMillis();
 		db.commit();
+		if (pendingChanges > 0) {
+			long time = System.currentTimeMillis() - start;
+			long total = System.currentTimeMillis() - firstPendingChange;
+			log.trace("committed {} changes in {} ms; {} changes/s", pendingChanges,
+					time, total > 0 ? (pendingChanges * 1000L / total) : pendingChanges);
+		}
+		pendingChanges = 0;
+	}
+
+	/**
+	 * Registers a change that should be written to the index file. The
+	 * changes are collected and committed together when the batch size is
+	 * reached or when the commit delay is over. This avoids a file commit per
+	 * change during bulk operations like imports.
+	 */
+	public synchronized void requestCommit() {
+		if (db.isClosed())
+			return;
+		if (pendingChanges == 0) {
+			firstPendingChange = System.currentTimeMillis();
+		}
+		pendingChanges++;
+		if (pendingChanges >= BATCH_SIZE) {
+			commit();
+			return;
+		}
+		if (scheduledCommit != null)
+			return;
+		try {
+			scheduledCommit = writer.schedule(this::scheduledCommit,
+					COMMIT_DELAY, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			commit();
+		}
+	}
+
+	private synchronized void scheduledCommit() {
+		scheduledCommit = null;
+		try {
+			commit();
+		} catch (Exception e) {
+			log.error("failed to commit diff index", e);
+		}
+	}
+
+	private void cancelScheduledCommit() {
+		if (scheduledCommit == null)
+			return;
+		scheduledCommit.cancel(false);
+		scheduledCommit = null;
 	}
 
 }
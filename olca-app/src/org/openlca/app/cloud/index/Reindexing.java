@@ -1,11 +1,18 @@
 package org.openlca.app.cloud.index;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.openlca.app.App;
+import org.openlca.app.M;
 import org.openlca.app.db.Database;
+import org.openlca.app.util.Error;
+import org.openlca.app.util.Labels;
 import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.cloud.model.data.FetchRequestData;
@@ -21,25 +28,75 @@ import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Version;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.util.Strings;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds the diff index of the active database and its repository. The
+ * model types are indexed in parallel; the categories are indexed first so
+ * that the changes of the data sets can be registered at their parent
+ * categories. The changes are written to the index in batches. The index is
+ * only marked as complete when all model types were indexed; when the
+ * rebuild is canceled or fails, it is rebuilt before the next
+ * synchronization (see {@link #ensureComplete()}).
+ */
 public class Reindexing {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
 	private IDatabase database;
 	private DiffIndex index;
 	private RepositoryClient client;
-	private CategoryDao categoryDao;
+	private Map<Long, Category> categories;
+	private IProgressMonitor monitor;
+	private volatile boolean failed;
 
 	public static void execute() {
-		new Reindexing().run();
+		execute(null);
+	}
+
+	/**
+	 * Rebuilds the index and reports the progress to the given monitor, which
+	 * can be null. When the monitor is canceled, the model types that were
+	 * not yet indexed are skipped and the index stays incomplete.
+	 */
+	public static void execute(IProgressMonitor monitor) {
+		Reindexing r = new Reindexing();
+		r.monitor = monitor;
+		r.run();
 	}
 
 	private void run() {
 		Map<ModelType, Map<String, FetchRequestData>> datasets = init();
 		if (datasets == null)
 			return;
+		List<ModelType> types = new ArrayList<>();
 		for (ModelType type : ModelType.values()) {
-			if (!type.isCategorized())
-				continue;
+			if (type.isCategorized() && type != ModelType.CATEGORY) {
+				types.add(type);
+			}
+		}
+		if (monitor != null) {
+			monitor.beginTask(M.RebuildingIndex, types.size() + 1);
+		}
+		run(ModelType.CATEGORY, datasets);
+		types.parallelStream().forEach(type -> run(type, datasets));
+		index.commit();
+		if (!isCanceled() && !failed) {
+			index.setComplete();
+		}
+		if (monitor != null) {
+			monitor.done();
+		}
+	}
+
+	private void run(ModelType type,
+			Map<ModelType, Map<String, FetchRequestData>> datasets) {
+		if (isCanceled())
+			return;
+		if (monitor != null) {
+			monitor.subTask(Labels.modelType(type));
+		}
+		try {
 			Map<String, CategorizedDescriptor> descriptorMap = getDescriptors(type);
 			Map<String, FetchRequestData> dataMap = datasets.get(type);
 			if (dataMap != null) {
@@ -50,8 +107,35 @@ public class Reindexing {
 			} else {
 				localSync(dataMap, descriptorMap.values());
 			}
+		} catch (Exception e) {
+			log.error("failed to index data sets of type " + type, e);
+			failed = true;
 		}
-		index.commit();
+		if (monitor != null) {
+			monitor.worked(1);
+		}
+	}
+
+	/**
+	 * Rebuilds the index of the active database if it is incomplete, e.g.
+	 * because the last rebuild was canceled. Returns true if the index is
+	 * complete; otherwise an error is shown.
+	 */
+	public static boolean ensureComplete() {
+		DiffIndex index = Database.getDiffIndex();
+		if (index == null)
+			return false;
+		if (index.isComplete())
+			return true;
+		App.runWithProgress(M.RebuildingIndex, Reindexing::execute);
+		if (index.isComplete())
+			return true;
+		Error.showBox(M.IndexRebuildFailed);
+		return false;
+	}
+
+	private boolean isCanceled() {
+		return monitor != null && monitor.isCanceled();
 	}
 
 	private Map<ModelType, Map<String, FetchRequestData>> init() {
@@ -64,7 +148,10 @@ public class Reindexing {
 		index = Database.getDiffIndex();
 		if (index == null)
 			return null;
-		categoryDao = new CategoryDao(database);
+		categories = new HashMap<>();
+		for (Category category : new CategoryDao(database).getAll()) {
+			categories.put(category.id, category);
+		}
 		index.clear();
 		if (client.getConfig().getLastCommitId() == null)
 			return new HashMap<>();
@@ -90,6 +177,8 @@ public class Reindexing {
 
 	private void remoteSync(Collection<FetchRequestData> datasets, Map<String, CategorizedDescriptor> descriptorMap) {
 		for (FetchRequestData data : datasets) {
+			if (isCanceled())
+				return;
 			CategorizedDescriptor descriptor = descriptorMap.get(data.refId);
 			if (descriptor == null) {
 				if (!data.isDeleted()) {
@@ -104,6 +193,8 @@ public class Reindexing {
 	private void localSync(Map<String, FetchRequestData> dataMap,
 			Collection<? extends CategorizedDescriptor> descriptors) {
 		for (CategorizedDescriptor descriptor : descriptors) {
+			if (isCanceled())
+				return;
 			if (dataMap != null && dataMap.containsKey(descriptor.refId))
 				continue;
 			put(descriptor);
@@ -122,10 +213,12 @@ public class Reindexing {
 	private void put(Dataset dataset) {
 		index.add(dataset, 0);
 		index.update(dataset, DiffType.DELETED);
+		index.requestCommit();
 	}
 
 	private void put(Dataset dataset, CategorizedDescriptor descriptor, boolean deletedOnRemote) {
 		index.add(dataset, descriptor.id);
+		index.requestCommit();
 		if (deletedOnRemote) {
 			index.update(dataset, DiffType.NEW);
 			return;
@@ -138,11 +231,12 @@ public class Reindexing {
 	private void put(CategorizedDescriptor descriptor) {
 		Category category = null;
 		if (descriptor.category != null) {
-			category = categoryDao.getForId(descriptor.category);
+			category = categories.get(descriptor.category);
 		}
 		Dataset dataset = Datasets.toDataset(descriptor, category);
 		index.add(dataset, descriptor.id);
 		index.update(dataset, DiffType.NEW);
+		index.requestCommit();
 	}
 
 	private boolean areEqual(Dataset dataset, CategorizedDescriptor descriptor) {
@@ -1,21 +1,66 @@
 package org.openlca.app.db;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.Simulator;
+import org.openlca.core.results.ContributionResult;
+import org.openlca.core.results.FullResult;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.core.results.SimulationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A simple cache for short data transfer (e.g. between two editor pages).
+ * Entries are normally removed by the receiver directly after they were put
+ * into the cache. To avoid memory leaks from entries that are never taken
+ * from the cache, entries expire after a time to live and the oldest entries
+ * are evicted when the estimated size of all entries exceeds a limit. Entries
+ * that were added within a short grace period are never evicted by size as
+ * they are typically waiting to be taken by an editor that is just opened.
+ * The cache is thread-safe.
  */
 public class AppCache {
 
-	private Map<String, Object> map = new HashMap<>();
+	/** The default time to live of cache entries. */
+	private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(30);
+
+	/** Entries younger than this are not evicted by size. */
+	private static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+	/** The default size of an object for which we have no estimation. */
+	private static final long DEFAULT_WEIGHT = 1024;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final Map<String, Entry> map = new LinkedHashMap<>();
+	private final long maxWeight;
+	private final long ttl;
+
+	private long totalWeight;
+	private long hits;
+	private long misses;
+	private long evictions;
 
 	public AppCache() {
+		this(Runtime.getRuntime().maxMemory() / 4, DEFAULT_TTL);
+	}
+
+	/**
+	 * Creates a cache with the given maximum of the estimated size of all
+	 * entries in bytes and time to live of the entries in milliseconds.
+	 */
+	public AppCache(long maxWeight, long ttl) {
+		this.maxWeight = maxWeight;
+		this.ttl = ttl;
 	}
 
 	public void put(String key, Object val) {
-		map.put(key, val);			
+		put(key, new Entry(val, weigh(val)));
 	}
 
 	/**
@@ -28,15 +73,181 @@ public class AppCache {
 		return key;
 	}
 
-	public <T> T remove(String key, Class<T> type) {
-		Object o = map.remove(key);
+	private synchronized void put(String key, Entry entry) {
+		Entry old = map.remove(key);
+		if (old != null) {
+			totalWeight -= old.weight;
+		}
+		map.put(key, entry);
+		totalWeight += entry.weight;
+		evict();
+	}
+
+	public synchronized <T> T remove(String key, Class<T> type) {
+		Entry entry = map.remove(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		totalWeight -= entry.weight;
+		Object o = entry.value;
+		if (o == null) {
+			misses++;
+			return null;
+		}
+		hits++;
 		return castSave(o, type);
 	}
-	
+
 	private <T> T castSave(Object o, Class<T> type) {
 		if (type.isInstance(o))
 			return type.cast(o);
 		return null;
 	}
 
+	/**
+	 * Removes expired entries. Then, if the estimated size of the cache is
+	 * still larger than the maximum size, the oldest entries are removed
+	 * until it fits again. Entries within the grace period are kept even if
+	 * the cache is then still too large.
+	 */
+	private void evict() {
+		long now = System.currentTimeMillis();
+		Iterator<Entry> it = map.values().iterator();
+		while (it.hasNext()) {
+			Entry e = it.next();
+			if ((now - e.time) > ttl) {
+				it.remove();
+				totalWeight -= e.weight;
+				evictions++;
+			}
+		}
+		it = map.values().iterator();
+		while (totalWeight > maxWeight && it.hasNext()) {
+			Entry e = it.next();
+			if ((now - e.time) < GRACE_PERIOD) {
+				// the entries are in insertion order; all following entries
+				// are even younger
+				break;
+			}
+			it.remove();
+			totalWeight -= e.weight;
+			evictions++;
+			log.warn("evicted an unused entry of {} bytes from the app cache",
+					e.weight);
+		}
+		if (totalWeight > maxWeight) {
+			log.warn("the app cache contains {} bytes of new entries which is"
+					+ " more than the limit of {} bytes", totalWeight, maxWeight);
+		}
+	}
+
+	/** Returns the number of successful `remove` calls. */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/** Returns the number of `remove` calls that did not find a value. */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/** Returns the number of entries that expired or were evicted. */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/** Returns the estimated size of all entries in bytes. */
+	public synchronized long getWeight() {
+		return totalWeight;
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AppCache [size=" + map.size() + ", weight=" + totalWeight
+				+ ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + "]";
+	}
+
+	/**
+	 * Estimates the size of the given object in bytes. This is a rough
+	 * estimation for calculation results and simulators, which are the
+	 * typical large objects in this cache, and for arrays and collections.
+	 */
+	static long weigh(Object val) {
+		if (val == null)
+			return 0;
+		if (val instanceof SimpleResult)
+			return weigh((SimpleResult) val);
+		if (val instanceof Simulator)
+			return weigh((Simulator) val);
+		if (val instanceof double[])
+			return 16 + 8L * ((double[]) val).length;
+		if (val instanceof double[][]) {
+			long w = 16;
+			for (double[] row : (double[][]) val)
+				w += weigh(row);
+			return w;
+		}
+		if (val instanceof long[])
+			return 16 + 8L * ((long[]) val).length;
+		if (val instanceof int[])
+			return 16 + 4L * ((int[]) val).length;
+		if (val instanceof Object[])
+			return 16 + DEFAULT_WEIGHT * ((Object[]) val).length;
+		if (val instanceof Collection)
+			return 16 + DEFAULT_WEIGHT * ((Collection<?>) val).size();
+		if (val instanceof Map)
+			return 16 + DEFAULT_WEIGHT * ((Map<?, ?>) val).size();
+		return DEFAULT_WEIGHT;
+	}
+
+	/**
+	 * Estimates the size of a result from its matrix dimensions: the number
+	 * of processes n, flows m, and impact categories k.
+	 */
+	private static long weigh(SimpleResult r) {
+		long n = r.techIndex == null ? 0 : r.techIndex.size();
+		long m = r.flowIndex == null ? 0 : r.flowIndex.size();
+		long k = r.impactIndex == null ? 0 : r.impactIndex.size();
+		// scaling vector, total requirements, and total results
+		long cells = 2 * n + m + k;
+		if (r instanceof ContributionResult) {
+			// direct flow, impact, and cost results of the processes
+			cells += (m + k + 1) * n;
+		}
+		if (r instanceof FullResult) {
+			// upstream results and the inverse of the technology matrix
+			cells += (m + k + 1) * n + n * n;
+		}
+		return DEFAULT_WEIGHT + 8 * cells;
+	}
+
+	/**
+	 * A simulator keeps the matrices of the product system; we estimate its
+	 * size from the dense technology matrix.
+	 */
+	private static long weigh(Simulator simulator) {
+		SimulationResult r = simulator.getResult();
+		if (r == null || r.techIndex == null)
+			return DEFAULT_WEIGHT;
+		long n = r.techIndex.size();
+		return DEFAULT_WEIGHT + 8 * n * n;
+	}
+
+	private static class Entry {
+
+		final Object value;
+		final long weight;
+		final long time = System.currentTimeMillis();
+
+		Entry(Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
 }
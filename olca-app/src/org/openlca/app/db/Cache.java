@@ -1,5 +1,7 @@
 package org.openlca.app.db;
 
+import org.openlca.app.navigation.NavigationIndex;
+import org.openlca.app.search.SearchIndex;
 import org.openlca.core.database.EntityCache;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -17,6 +19,9 @@ public final class Cache {
 	private static AppCache appCache = new AppCache();
 	private static EntityCache entityCache;
 	private static MatrixCache matrixCache;
+	private static SearchIndex searchIndex;
+	private static NavigationIndex navigationIndex;
+	private static volatile LinkingProperties linkingProperties;
 
 	private Cache() {
 	}
@@ -29,11 +34,35 @@ public final class Cache {
 		return matrixCache;
 	}
 
+	public static SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	public static NavigationIndex getNavigationIndex() {
+		return navigationIndex;
+	}
+
+	/**
+	 * Returns the linking properties of the active database if they were
+	 * already checked and not invalidated by a change of a process or flow.
+	 */
+	static LinkingProperties getLinkingProperties() {
+		return linkingProperties;
+	}
+
+	static void setLinkingProperties(LinkingProperties props) {
+		linkingProperties = props;
+	}
+
 	public static void close() {
 		log.trace("close cache");
+		if (appCache != null)
+			log.trace("app cache statistics: {}", appCache);
 		evictAll();
 		entityCache = null;
 		matrixCache = null;
+		searchIndex = null;
+		navigationIndex = null;
 		appCache = null;
 	}
 
@@ -46,6 +75,8 @@ public final class Cache {
 		close();
 		entityCache = EntityCache.create(database);
 		matrixCache = MatrixCache.createLazy(database);
+		searchIndex = new SearchIndex(database);
+		navigationIndex = new NavigationIndex(database);
 		appCache = new AppCache();
 	}
 
@@ -68,6 +99,11 @@ public final class Cache {
 			evictEntity(descriptor);
 			evictFromMatrices(descriptor);
 		}
+		if (searchIndex != null)
+			searchIndex.invalidate(descriptor.type);
+		if (descriptor.type == ModelType.PROCESS
+				|| descriptor.type == ModelType.FLOW)
+			linkingProperties = null;
 	}
 
 	private static boolean shouldEvictAll(ModelType type) {
@@ -81,6 +117,11 @@ public final class Cache {
 			entityCache.invalidateAll();
 		if (matrixCache != null)
 			matrixCache.evictAll();
+		if (searchIndex != null)
+			searchIndex.invalidateAll();
+		if (navigationIndex != null)
+			navigationIndex.clear();
+		linkingProperties = null;
 	}
 
 	private static void evictEntity(BaseDescriptor descriptor) {
@@ -1,11 +1,14 @@
 package org.openlca.app.db;
 
+import org.openlca.app.navigation.NavigationIndex;
+import org.openlca.app.search.SearchIndex;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.cloud.util.Datasets;
 import org.openlca.core.database.CategoryDao;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.IDatabaseListener;
 import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
@@ -24,6 +27,10 @@ class DatabaseListener implements IDatabaseListener {
 
 	@Override
 	public void modelInserted(BaseDescriptor descriptor) {
+		invalidateCaches(descriptor);
+		NavigationIndex navIndex = Cache.getNavigationIndex();
+		if (navIndex != null)
+			navIndex.inserted(descriptor);
 		if (indexUpdater.disabled)
 			return;
 		Dataset dataset = toDataset(descriptor);
@@ -34,6 +41,10 @@ class DatabaseListener implements IDatabaseListener {
 
 	@Override
 	public void modelUpdated(BaseDescriptor descriptor) {
+		invalidateCaches(descriptor);
+		NavigationIndex navIndex = Cache.getNavigationIndex();
+		if (navIndex != null)
+			navIndex.updated(descriptor);
 		if (indexUpdater.disabled)
 			return;
 		Dataset dataset = toDataset(descriptor);
@@ -44,6 +55,10 @@ class DatabaseListener implements IDatabaseListener {
 
 	@Override
 	public void modelDeleted(BaseDescriptor descriptor) {
+		invalidateCaches(descriptor);
+		NavigationIndex navIndex = Cache.getNavigationIndex();
+		if (navIndex != null)
+			navIndex.deleted(descriptor);
 		if (indexUpdater.disabled)
 			return;
 		Dataset dataset = toDataset(descriptor);
@@ -52,6 +67,18 @@ class DatabaseListener implements IDatabaseListener {
 		indexUpdater.delete(dataset);
 	}
 
+	private void invalidateCaches(BaseDescriptor descriptor) {
+		if (descriptor == null)
+			return;
+		if (descriptor.type == null
+				|| descriptor.type.isOneOf(ModelType.PROCESS, ModelType.FLOW))
+			Cache.setLinkingProperties(null);
+		SearchIndex index = Cache.getSearchIndex();
+		if (index == null)
+			return;
+		index.invalidate(descriptor.type);
+	}
+
 	private Dataset toDataset(BaseDescriptor descriptor) {
 		if (!(descriptor instanceof CategorizedDescriptor))
 			return null;
@@ -0,0 +1,161 @@
+package org.openlca.app.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openlca.cloud.api.RepositoryConfig;
+import org.openlca.core.database.IDatabase;
+import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.FileSource;
+import org.zeroturnaround.zip.ZipEntrySource;
+import org.zeroturnaround.zip.ZipUtil;
+
+/**
+ * Creates a zolca-File of an open Derby database. The database is first
+ * copied with the online backup procedure of Derby into a temporary folder.
+ * This gives a consistent snapshot of the database while it can be still
+ * used. The file storage of the database (shape files, layouts etc.) is
+ * copied into the temporary folder directly before this, so that files that
+ * are changed while the archive is packed do not get into the backup. Note
+ * that the copy of the file storage is not synchronized with the database
+ * snapshot. The copies are then packed into the zolca-File.
+ */
+public class DerbyBackup implements Runnable {
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final File zolcaFile;
+	private boolean success = false;
+
+	public DerbyBackup(IDatabase database, File zolcaFile) {
+		this.database = database;
+		this.zolcaFile = zolcaFile;
+	}
+
+	public boolean doneWithSuccess() {
+		return success;
+	}
+
+	@Override
+	public void run() {
+		File tempDir = null;
+		try {
+			tempDir = Files.createTempDirectory("olca_backup_").toFile();
+			File storage = copyStorage(new File(tempDir, "storage"));
+			File snapshot = backup(new File(tempDir, "database"));
+			List<ZipEntrySource> sources = new ArrayList<>();
+			collect(snapshot, "", false, sources);
+			if (storage != null) {
+				collect(storage, DatabaseDir.FILE_STORAGE + "/", true, sources);
+			}
+			log.trace("pack {} files into {}", sources.size(), zolcaFile);
+			ZipUtil.pack(sources.toArray(
+					new ZipEntrySource[sources.size()]), zolcaFile);
+			success = true;
+		} catch (Exception e) {
+			success = false;
+			log.error("failed to create backup of database " + database, e);
+		} finally {
+			if (tempDir != null) {
+				Dirs.delete(tempDir.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Copies the file storage of the database into the given folder and
+	 * returns this folder. Returns null if the database has no file storage.
+	 * Files that are excluded from the backup are not copied.
+	 */
+	private File copyStorage(File target) throws IOException {
+		File storage = DatabaseDir.getFileStorageLocation(database);
+		if (storage == null || !storage.exists())
+			return null;
+		log.trace("copy file storage {} to {}", storage, target);
+		Path root = storage.toPath();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) throws IOException {
+				String path = root.relativize(file).toString()
+						.replace("\\", "/");
+				if (exclude(DatabaseDir.FILE_STORAGE + "/" + path, true))
+					return FileVisitResult.CONTINUE;
+				Path copy = target.toPath().resolve(path);
+				Files.createDirectories(copy.getParent());
+				Files.copy(file, copy);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return target;
+	}
+
+	/**
+	 * Runs the online backup of Derby into the given folder and returns the
+	 * sub-folder with the copy of the database.
+	 */
+	private File backup(File dir) throws Exception {
+		log.trace("create online backup of database {} in {}", database, dir);
+		dir.mkdirs();
+		try (Connection con = database.createConnection();
+				CallableStatement call = con.prepareCall(
+						"CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)")) {
+			call.setString(1, dir.getAbsolutePath());
+			call.execute();
+		}
+		// Derby creates a sub-folder with the name of the database folder
+		File[] dirs = dir.listFiles(File::isDirectory);
+		if (dirs == null || dirs.length != 1)
+			throw new IOException("Derby backup folder not found in " + dir);
+		return dirs[0];
+	}
+
+	/**
+	 * Adds the files of the given folder with the given path prefix to the
+	 * sources. The repository configuration of the database is excluded. The
+	 * file storage is only included if `withStorage` is true; it is taken
+	 * from the database folder and not from the Derby snapshot.
+	 */
+	private void collect(File folder, String prefix, boolean withStorage,
+			List<ZipEntrySource> sources) throws IOException {
+		Path root = folder.toPath();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) throws IOException {
+				String path = prefix + root.relativize(file).toString()
+						.replace("\\", "/");
+				if (!exclude(path, withStorage)) {
+					sources.add(new FileSource(path, file.toFile()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private boolean exclude(String path, boolean withStorage) {
+		String storage = DatabaseDir.FILE_STORAGE + "/";
+		if (!path.startsWith(storage))
+			return false;
+		if (!withStorage)
+			return true;
+		String sub = path.substring(storage.length());
+		if (sub.equals(RepositoryConfig.PROPERTIES_FILE))
+			return true;
+		if (sub.startsWith(RepositoryConfig.INDEX_DIR))
+			return true;
+		return false;
+	}
+
+}
@@ -5,19 +5,24 @@ import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.cloud.index.DiffType;
 import org.openlca.cloud.model.data.Dataset;
 
+/**
+ * Writes the changes of the local database into the diff index of the
+ * connected repository. Outside of a transaction, the changes are committed
+ * in batches by the index itself.
+ */
 public class IndexUpdater {
 
 	boolean disabled;
 	private boolean inTransaction;
 
-	public void beginTransaction() {
+	public synchronized void beginTransaction() {
 		// no multitransaction support implemented
 		if (inTransaction)
 			throw new IllegalStateException("A transaction is already running");
 		inTransaction = true;
 	}
 
-	public void endTransaction() {
+	public synchronized void endTransaction() {
 		if (!inTransaction)
 			throw new IllegalStateException("No transaction running");
 		DiffIndex index = getIndex();
@@ -34,14 +39,14 @@ public class IndexUpdater {
 		disabled = false;
 	}
 
-	public void insert(Dataset dataset, long localId) {
+	public synchronized void insert(Dataset dataset, long localId) {
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
 		insert(dataset, localId, index);
 		if (inTransaction)
 			return;
-		index.commit();
+		index.requestCommit();
 	}
 
 	private void insert(Dataset dataset, long localId, DiffIndex index) {
@@ -49,14 +54,14 @@ public class IndexUpdater {
 		index.update(dataset, DiffType.NEW);
 	}
 
-	public void update(Dataset dataset, long localId) {
+	public synchronized void update(Dataset dataset, long localId) {
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
 		update(dataset, localId, index);
 		if (inTransaction)
 			return;
-		index.commit();
+		index.requestCommit();
 	}
 
 	private void update(Dataset dataset, long localId, DiffIndex index) {
@@ -72,14 +77,14 @@ public class IndexUpdater {
 			index.update(dataset, DiffType.CHANGED);
 	}
 
-	public void delete(Dataset dataset) {
+	public synchronized void delete(Dataset dataset) {
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
 		delete(dataset, index);
 		if (inTransaction)
 			return;
-		index.commit();
+		index.requestCommit();
 	}
 
 	private void delete(Dataset dataset, DiffIndex index) {
@@ -3,7 +3,9 @@ package org.openlca.app.db;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.matrix.ProcessProduct;
@@ -13,51 +15,116 @@ import org.openlca.core.model.FlowType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gnu.trove.set.hash.TLongHashSet;
+
 class LinkingProperties {
 
 	/**
 	 * Contains the IDs of product or waste flows that have more than one
 	 * provider. If this set is empty, there are no such flows in the database.
 	 */
-	final Set<Long> multiProviderFlows = new HashSet<>();
+	final TLongHashSet multiProviderFlows = new TLongHashSet();
 
 	/**
 	 * Contains the IDs of processes where product inputs or waste outputs are
 	 * __not__ linked to a default provider. If this set is empty, there are no
 	 * such unlinked processes in the database.
 	 */
-	final Set<Long> processesWithoutProviders = new HashSet<>();
+	final TLongHashSet processesWithoutProviders = new TLongHashSet();
 
-	static LinkingProperties check(IDatabase db) {
+	/**
+	 * Checks the linking properties of the given database. The progress
+	 * monitor is optional; if it is given, the check reports its progress to
+	 * the monitor and stops when the monitor is canceled. Null is returned
+	 * when the check was canceled or could not be completed.
+	 */
+	static LinkingProperties check(IDatabase db, IProgressMonitor monitor) {
 		LinkingProperties props = new LinkingProperties();
 		if (db == null)
 			return props;
-		new Check(db).doIt(props);
-		return props;
+		boolean complete = new Check(db, monitor).doIt(props);
+		return complete ? props : null;
+	}
+
+	static Set<Long> boxed(TLongHashSet set) {
+		Set<Long> boxed = new HashSet<>(set.size());
+		set.forEach(id -> {
+			boxed.add(id);
+			return true;
+		});
+		return boxed;
 	}
 
 	private static class Check {
 
+		/** The number of exchanges after which the progress is updated. */
+		private static final int STEP = 10_000;
+
 		final IDatabase db;
-		final FlowTable flowTypes;
-		final ProcessTable processes;
+		final IProgressMonitor monitor;
+		FlowTable flowTypes;
+		ProcessTable processes;
 
-		Check(IDatabase db) {
+		Check(IDatabase db, IProgressMonitor monitor) {
 			this.db = db;
+			this.monitor = monitor;
+		}
+
+		boolean doIt(LinkingProperties props) {
+			int steps = 2 + countExchanges() / STEP;
+			if (monitor != null) {
+				monitor.beginTask("Check database links", steps);
+				monitor.subTask("Load flows and providers");
+			}
 			flowTypes = FlowTable.create(db);
 			processes = ProcessTable.create(db);
+			if (canceled())
+				return false;
+			worked(1);
+			checkMultiProviders(props);
+			worked(1);
+			if (canceled())
+				return false;
+			if (monitor != null) {
+				monitor.subTask("Scan exchanges");
+			}
+			if (!checkUnlinkedProcesses(props) || canceled())
+				return false;
+			if (monitor != null) {
+				monitor.done();
+			}
+			return true;
 		}
 
-		void doIt(LinkingProperties props) {
-			checkMultiProviders(props);
-			checkUnlinkedProcesses(props);
+		int countExchanges() {
+			if (monitor == null)
+				return 0;
+			AtomicLong count = new AtomicLong();
+			try {
+				String sql = "select count(*) from tbl_exchanges";
+				NativeSql.on(db).query(sql, r -> {
+					count.set(r.getLong(1));
+					return false;
+				});
+			} catch (Exception e) {
+				error("Failed to count exchanges", e);
+			}
+			return (int) Math.min(Integer.MAX_VALUE, count.get());
 		}
 
-		void checkUnlinkedProcesses(LinkingProperties props) {
+		/** Returns false if the exchanges could not be scanned. */
+		boolean checkUnlinkedProcesses(LinkingProperties props) {
 			try {
 				String sql = "select f_owner, f_flow, is_input, f_default_provider "
 						+ " from tbl_exchanges";
+				int[] rows = { 0 };
 				NativeSql.on(db).query(sql, r -> {
+					rows[0]++;
+					if (rows[0] % STEP == 0) {
+						worked(1);
+						if (canceled())
+							return false;
+					}
 					long flowID = r.getLong(2);
 					FlowType type = flowTypes.type(flowID);
 					boolean isInput = r.getBoolean(3);
@@ -70,8 +137,10 @@ class LinkingProperties {
 					}
 					return true;
 				});
+				return true;
 			} catch (Exception e) {
 				error("Failed to scan exchanges table", e);
+				return false;
 			}
 		}
 
@@ -93,6 +162,16 @@ class LinkingProperties {
 			return false;
 		}
 
+		boolean canceled() {
+			return monitor != null && monitor.isCanceled();
+		}
+
+		void worked(int work) {
+			if (monitor != null) {
+				monitor.worked(work);
+			}
+		}
+
 		void error(String message, Exception e) {
 			Logger log = LoggerFactory.getLogger(Check.class);
 			log.error(message, e);
@@ -1,5 +1,6 @@
 package org.openlca.app.db;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -13,6 +14,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorSite;
 import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.forms.IManagedForm;
 import org.eclipse.ui.forms.editor.FormPage;
 import org.eclipse.ui.forms.widgets.FormToolkit;
@@ -32,32 +34,52 @@ import org.openlca.app.util.tables.TableClipboard;
 import org.openlca.app.util.tables.Tables;
 import org.openlca.app.util.viewers.Viewers;
 import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.openlca.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class LinkingPropertiesPage extends SimpleFormEditor {
 
 	private LinkingProperties props;
 
 	public static void show() {
-		AtomicReference<LinkingProperties> ref = new AtomicReference<>();
-		App.runWithProgress("Check database links", () -> {
-			LinkingProperties props = LinkingProperties.check(Database.get());
-			ref.set(props);
-		});
-		LinkingProperties props = ref.get();
-		if (props == null)
-			return;
+		LinkingProperties props = Cache.getLinkingProperties();
+		if (props == null) {
+			props = runCheck();
+			if (props == null)
+				return;
+			Cache.setLinkingProperties(props);
+		}
 		String key = Cache.getAppCache().put(props);
 		IEditorInput input = new SimpleEditorInput(
 				"LinkingProperties", key, M.LinkingProperties);
 		Editors.open(input, "editors.LinkingPropertiesPage");
 	}
 
+	/**
+	 * Runs the check of the linking properties in a cancelable background
+	 * process. Returns null when the check was canceled or failed.
+	 */
+	private static LinkingProperties runCheck() {
+		AtomicReference<LinkingProperties> ref = new AtomicReference<>();
+		IDatabase db = Database.get();
+		try {
+			PlatformUI.getWorkbench().getProgressService().run(true, true,
+					monitor -> ref.set(LinkingProperties.check(db, monitor)));
+		} catch (InvocationTargetException | InterruptedException e) {
+			Logger log = LoggerFactory.getLogger(LinkingPropertiesPage.class);
+			log.error("Failed to check linking properties", e);
+			return null;
+		}
+		return ref.get();
+	}
+
 	@Override
 	public void init(IEditorSite site, IEditorInput input)
 			throws PartInitException {
@@ -136,7 +158,7 @@ public class LinkingPropertiesPage extends SimpleFormEditor {
 			TableViewer table = Tables.createViewer(comp, M.Process);
 			ProcessDao dao = new ProcessDao(Database.get());
 			List<ProcessDescriptor> list = dao.getDescriptors(
-					props.processesWithoutProviders);
+					LinkingProperties.boxed(props.processesWithoutProviders));
 			fillTable(table, list);
 		}
 
@@ -151,7 +173,7 @@ public class LinkingPropertiesPage extends SimpleFormEditor {
 			TableViewer table = Tables.createViewer(comp, M.Flow);
 			FlowDao dao = new FlowDao(Database.get());
 			List<FlowDescriptor> list = dao.getDescriptors(
-					props.multiProviderFlows);
+					LinkingProperties.boxed(props.multiProviderFlows));
 			fillTable(table, list);
 		}
 
@@ -1,6 +1,8 @@
 package org.openlca.app.editors.graphical;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.ConnectionRouter;
@@ -18,6 +20,7 @@ import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.views.contentoutline.IContentOutlinePage;
 import org.openlca.app.M;
+import org.openlca.app.db.Cache;
 import org.openlca.app.editors.graphical.layout.LayoutType;
 import org.openlca.app.editors.graphical.layout.NodeLayoutStore;
 import org.openlca.app.editors.graphical.model.Link;
@@ -30,9 +33,11 @@ import org.openlca.app.editors.systems.ProductSystemEditor;
 import org.openlca.app.util.Labels;
 import org.openlca.app.util.Question;
 import org.openlca.app.util.UI;
+import org.openlca.core.database.EntityCache;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.Process;
 import org.openlca.core.model.ProcessLink;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
 
 public class ProductSystemGraphEditor extends GraphicalEditor {
 
@@ -118,10 +123,19 @@ public class ProductSystemGraphEditor extends GraphicalEditor {
 
 	private ProductSystemNode expandModel() {
 		ProductSystemNode node = new ProductSystemNode(this);
-		for (Long id : getSystemEditor().getModel().processes) {
+		Set<Long> ids = getSystemEditor().getModel().processes;
+		EntityCache cache = Cache.getEntityCache();
+		// load the process descriptors in one call; the remaining IDs
+		// may refer to sub-systems
+		Map<Long, ProcessDescriptor> processes = cache.getAll(
+				ProcessDescriptor.class, ids);
+		for (Long id : ids) {
 			if (id == null)
 				continue;
-			ProcessNode n = ProcessNode.create(id);
+			ProcessDescriptor d = processes.get(id);
+			ProcessNode n = d != null
+					? new ProcessNode(d)
+					: ProcessNode.create(id);
 			if (n != null) {
 				node.add(n);
 			}
@@ -1,13 +1,20 @@
 package org.openlca.app.editors.graphical.action;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.gef.commands.Command;
 import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.openlca.app.M;
+import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
 import org.openlca.app.editors.graphical.command.CommandUtil;
 import org.openlca.app.editors.graphical.command.ExpansionCommand;
@@ -15,19 +22,22 @@ import org.openlca.app.editors.graphical.command.MassCreationCommand;
 import org.openlca.app.editors.graphical.model.ExchangeNode;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
-import org.openlca.core.database.FlowDao;
+import org.openlca.app.util.UI;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.matrix.LinkingConfig.DefaultProviders;
+import org.openlca.core.matrix.ProcessProduct;
+import org.openlca.core.matrix.cache.ProcessTable;
 import org.openlca.core.model.Exchange;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.ProcessType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class BuildNextTierAction extends Action implements IBuildAction {
 
-	private final FlowDao flowDao;
 	private final ProcessDao processDao;
 	private List<ProcessNode> nodes;
 	private ProcessType preferredType = ProcessType.UNIT_PROCESS;
@@ -36,7 +46,6 @@ class BuildNextTierAction extends Action implements IBuildAction {
 	BuildNextTierAction() {
 		setId(ActionIds.BUILD_NEXT_TIER);
 		setText(M.BuildNextTier);
-		flowDao = new FlowDao(Database.get());
 		processDao = new ProcessDao(Database.get());
 	}
 
@@ -60,11 +69,41 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		if (nodes == null || nodes.isEmpty())
 			return;
 		ProductSystemNode systemNode = nodes.get(0).parent();
-		List<CategorizedDescriptor> providers = new ArrayList<>();
-		List<ProcessLink> newConnections = new ArrayList<>();
-		for (ProcessNode node : nodes)
-			collectFor(node, providers, newConnections);
-		Command command = MassCreationCommand.nextTier(providers, newConnections, systemNode);
+
+		// the exchange nodes are created in the UI thread as this can
+		// modify the graph model; the providers are then searched in a
+		// background thread
+		ProcessNode.loadExchangeNodes(nodes);
+		Map<ProcessNode, List<Exchange>> candidates = new LinkedHashMap<>();
+		for (ProcessNode node : nodes) {
+			candidates.put(node, getLinkCandidates(node));
+		}
+		Set<CategorizedDescriptor> providers = new LinkedHashSet<>();
+		Set<ProcessLink> newConnections = new LinkedHashSet<>();
+		try {
+			new ProgressMonitorDialog(UI.shell()).run(true, true, monitor -> {
+				monitor.beginTask(M.BuildNextTier, candidates.size());
+				Resolver resolver = new Resolver(candidates);
+				for (Map.Entry<ProcessNode, List<Exchange>> e : candidates
+						.entrySet()) {
+					if (monitor.isCanceled())
+						throw new InterruptedException();
+					collectFor(e.getKey(), e.getValue(), resolver,
+							providers, newConnections);
+					monitor.worked(1);
+				}
+				monitor.done();
+			});
+		} catch (InterruptedException e) {
+			return;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to search providers", e);
+			return;
+		}
+		Command command = MassCreationCommand.nextTier(
+				new ArrayList<>(providers), new ArrayList<>(newConnections),
+				systemNode);
 		if (command == null)
 			return;
 		for (ProcessNode node : nodes)
@@ -73,79 +112,95 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		systemNode.editor.setDirty(true);
 	}
 
-	private void collectFor(ProcessNode node,
-			List<CategorizedDescriptor> providers,
-			List<ProcessLink> newConnections) {
-		for (ExchangeNode enode : getLinkCandidates(node)) {
-			CategorizedDescriptor provider = findProvider(enode.exchange);
+	private void collectFor(ProcessNode node, List<Exchange> exchanges,
+			Resolver resolver, Set<CategorizedDescriptor> providers,
+			Set<ProcessLink> newConnections) {
+		for (Exchange exchange : exchanges) {
+			CategorizedDescriptor provider = resolver.findProvider(exchange);
 			if (provider == null)
 				continue;
-			if (!providers.contains(provider)) {
-				providers.add(provider);
-			}
+			providers.add(provider);
 			ProcessLink link = new ProcessLink();
-			link.flowId = enode.exchange.flow.id;
-			link.exchangeId = enode.exchange.id;
+			link.flowId = exchange.flow.id;
+			link.exchangeId = exchange.id;
 			link.processId = node.process.id;
 			link.providerId = provider.id;
 			link.isSystemLink = provider.type == ModelType.PRODUCT_SYSTEM;
-			if (!newConnections.contains(link)) {
-				newConnections.add(link);
-			}
+			newConnections.add(link);
 		}
 	}
 
-	private List<ExchangeNode> getLinkCandidates(ProcessNode node) {
-		List<ExchangeNode> nodes = new ArrayList<>();
+	private List<Exchange> getLinkCandidates(ProcessNode node) {
+		List<Exchange> exchanges = new ArrayList<>();
 		for (ExchangeNode e : node.loadExchangeNodes()) {
-			if (e.exchange == null)
+			if (e.exchange == null || e.exchange.flow == null)
 				continue;
 			if (e.parent().isConnected(e.exchange.id))
 				continue; // already connected
 			if (e.isWaste() && !e.exchange.isInput)
-				nodes.add(e);
+				exchanges.add(e.exchange);
 			else if (!e.isWaste() && e.exchange.isInput)
-				nodes.add(e);
+				exchanges.add(e.exchange);
 		}
-		return nodes;
+		return exchanges;
 	}
 
-	private CategorizedDescriptor findProvider(Exchange e) {
-		if (e.flow == null)
-			return null;
-		if (providers == DefaultProviders.ONLY) {
-			if (e.defaultProviderId == 0l)
-				return null;
-			return processDao.getDescriptor(e.defaultProviderId);
-		}
-		if (providers == DefaultProviders.PREFER
-				&& e.defaultProviderId != 0L)
-			return processDao.getDescriptor(e.defaultProviderId);
-
-		List<ProcessDescriptor> providers = getProviders(e);
-
-		ProcessDescriptor bestMatch = null;
-		for (ProcessDescriptor descriptor : providers) {
-			if (descriptor.processType == preferredType)
-				return descriptor;
-			if (bestMatch != null)
-				continue;
-			bestMatch = descriptor;
+	/**
+	 * Searches the providers of the link candidates in the process table of
+	 * the matrix cache. Default providers that are not contained in that
+	 * table are loaded with a single query when the resolver is created.
+	 */
+	private class Resolver {
+
+		private final ProcessTable table;
+		private final Map<Long, CategorizedDescriptor> defaults = new HashMap<>();
+
+		Resolver(Map<ProcessNode, List<Exchange>> candidates) {
+			table = Cache.getMatrixCache().getProcessTable();
+			if (providers == DefaultProviders.IGNORE)
+				return;
+			Set<Long> ids = new HashSet<>();
+			for (List<Exchange> exchanges : candidates.values()) {
+				for (Exchange e : exchanges) {
+					if (e.defaultProviderId != 0L)
+						ids.add(e.defaultProviderId);
+				}
+			}
+			if (ids.isEmpty())
+				return;
+			for (ProcessDescriptor d : processDao.getDescriptors(ids)) {
+				defaults.put(d.id, d);
+			}
 		}
-		return bestMatch;
-	}
-
-	private List<ProcessDescriptor> getProviders(Exchange e) {
-		if (e == null || e.flow == null)
-			return Collections.emptyList();
 
-		Set<Long> providerIds = null;
-		if (!e.isInput) {
-			providerIds = flowDao.getWhereInput(e.flow.id);
-		} else {
-			providerIds = flowDao.getWhereOutput(e.flow.id);
+		CategorizedDescriptor findProvider(Exchange e) {
+			if (e.flow == null)
+				return null;
+			if (providers == DefaultProviders.ONLY) {
+				if (e.defaultProviderId == 0L)
+					return null;
+				return defaults.get(e.defaultProviderId);
+			}
+			if (providers == DefaultProviders.PREFER
+					&& e.defaultProviderId != 0L) {
+				CategorizedDescriptor d = defaults.get(e.defaultProviderId);
+				if (d != null)
+					return d;
+			}
+			List<ProcessProduct> candidates = table.getProviders(e.flow.id);
+			if (candidates == null)
+				return null;
+			CategorizedDescriptor bestMatch = null;
+			for (ProcessProduct candidate : candidates) {
+				if (candidate.process == null)
+					continue;
+				if (table.getType(candidate.process.id) == preferredType)
+					return candidate.process;
+				if (bestMatch != null)
+					continue;
+				bestMatch = candidate.process;
+			}
+			return bestMatch;
 		}
-		return processDao.getDescriptors(providerIds);
 	}
-
 }
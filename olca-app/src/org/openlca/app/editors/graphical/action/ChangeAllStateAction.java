@@ -1,5 +1,8 @@
 package org.openlca.app.editors.graphical.action;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.gef.commands.Command;
 import org.eclipse.jface.viewers.ISelection;
 import org.openlca.app.M;
@@ -29,11 +32,18 @@ class ChangeAllStateAction extends EditorAction {
 
 	@Override
 	public void run() {
-		Command actualCommand = null;
+		boolean minimize = type == MINIMIZE;
+		List<ProcessNode> nodes = new ArrayList<>();
 		for (ProcessNode node : editor.getModel().getChildren()) {
-			boolean minimize = type == MINIMIZE;
-			if (node.isMinimized() == minimize)
-				continue;
+			if (node.isMinimized() != minimize)
+				nodes.add(node);
+		}
+		if (!minimize) {
+			// load the exchanges of all nodes with a single query
+			ProcessNode.loadExchangeNodes(nodes);
+		}
+		Command actualCommand = null;
+		for (ProcessNode node : nodes) {
 			ChangeStateCommand newCommand = new ChangeStateCommand(node);
 			actualCommand = CommandUtil.chain(newCommand, actualCommand);
 		}
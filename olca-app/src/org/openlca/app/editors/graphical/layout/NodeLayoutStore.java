@@ -5,7 +5,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openlca.app.db.DatabaseDir;
 import org.openlca.app.editors.graphical.model.ProcessNode;
@@ -83,8 +85,9 @@ public final class NodeLayoutStore {
 			return false;
 		try {
 			List<NodeLayoutInfo> layoutInfo = parseJson(file);
+			Map<Long, ProcessNode> created = loadExchanges(layoutInfo, node);
 			for (NodeLayoutInfo layout : layoutInfo)
-				apply(layout, node);
+				apply(layout, node, created.get(layout.id));
 			return true;
 		} catch (IOException e) {
 			Logger log = LoggerFactory.getLogger(NodeLayoutStore.class);
@@ -93,14 +96,39 @@ public final class NodeLayoutStore {
 		}
 	}
 
-	private static void apply(NodeLayoutInfo info, ProductSystemNode model)
-			throws NodeLayoutException {
+	/**
+	 * Loads the exchanges of all nodes that are maximized in the given layout
+	 * with a single query. Nodes that are not yet in the model are created
+	 * for this and returned so that they are not created again.
+	 */
+	private static Map<Long, ProcessNode> loadExchanges(
+			List<NodeLayoutInfo> layoutInfo, ProductSystemNode model) {
+		Map<Long, ProcessNode> created = new HashMap<>();
+		List<ProcessNode> maximized = new ArrayList<>();
+		for (NodeLayoutInfo info : layoutInfo) {
+			if (info.minimized)
+				continue;
+			ProcessNode node = model.getProcessNode(info.id);
+			if (node == null) {
+				node = ProcessNode.create(info.id);
+				if (node == null)
+					continue;
+				created.put(info.id, node);
+			}
+			maximized.add(node);
+		}
+		ProcessNode.loadExchangeNodes(maximized);
+		return created;
+	}
+
+	private static void apply(NodeLayoutInfo info, ProductSystemNode model,
+			ProcessNode created) throws NodeLayoutException {
 		ProcessNode node = model.getProcessNode(info.id);
 		if (node != null) {
 			node.apply(info);
 			return;
 		}
-		node = ProcessNode.create(info.id);
+		node = created != null ? created : ProcessNode.create(info.id);
 		if (node == null)
 			return;
 		model.add(node);
@@ -0,0 +1,105 @@
+package org.openlca.app.editors.graphical.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openlca.core.database.EntityCache;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.Unit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the exchanges that are displayed in the process nodes of the graph
+ * editor. Instead of loading the full process entities, only the fields that
+ * are required for the graph are selected from the exchange table. The flows
+ * and units of these exchanges are taken from the entity cache. Note that the
+ * returned exchanges are not attached to a persistence context and should be
+ * only used for display purposes.
+ */
+class ExchangeLoader {
+
+	/** The maximum number of process IDs in a single query. */
+	private static final int CHUNK_SIZE = 1000;
+
+	private final IDatabase db;
+	private final EntityCache cache;
+
+	ExchangeLoader(IDatabase db, EntityCache cache) {
+		this.db = db;
+		this.cache = cache;
+	}
+
+	/**
+	 * Loads the product and waste exchanges of the processes with the given
+	 * IDs and returns them grouped by process ID.
+	 */
+	Map<Long, List<Exchange>> load(Collection<Long> processIds) {
+		Map<Long, List<Exchange>> map = new HashMap<>();
+		if (processIds == null || processIds.isEmpty())
+			return map;
+		List<Long> chunk = new ArrayList<>();
+		for (Long id : processIds) {
+			if (id == null)
+				continue;
+			chunk.add(id);
+			if (chunk.size() >= CHUNK_SIZE) {
+				load(chunk, map);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			load(chunk, map);
+		}
+		return map;
+	}
+
+	private void load(List<Long> processIds, Map<Long, List<Exchange>> map) {
+		StringBuilder sql = new StringBuilder();
+		sql.append("select id, f_owner, f_flow, f_unit, ");
+		sql.append("resulting_amount_value, is_input, avoided_product, ");
+		sql.append("f_default_provider from tbl_exchanges where f_owner in (");
+		for (int i = 0; i < processIds.size(); i++) {
+			if (i > 0)
+				sql.append(',');
+			sql.append(processIds.get(i));
+		}
+		sql.append(')');
+		try {
+			NativeSql.on(db).query(sql.toString(), r -> {
+				Flow flow = cache.get(Flow.class, r.getLong(3));
+				if (flow == null || flow.flowType == FlowType.ELEMENTARY_FLOW)
+					return true;
+				Exchange e = new Exchange();
+				e.id = r.getLong(1);
+				e.flow = flow;
+				long unitId = r.getLong(4);
+				if (unitId != 0) {
+					e.unit = cache.get(Unit.class, unitId);
+				}
+				e.amount = r.getDouble(5);
+				e.isInput = r.getBoolean(6);
+				e.isAvoided = r.getBoolean(7);
+				e.defaultProviderId = r.getLong(8);
+				long owner = r.getLong(2);
+				List<Exchange> list = map.get(owner);
+				if (list == null) {
+					list = new ArrayList<>();
+					map.put(owner, list);
+				}
+				list.add(e);
+				return true;
+			});
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to load exchanges", e);
+		}
+	}
+}
@@ -2,7 +2,9 @@ package org.openlca.app.editors.graphical.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Dimension;
@@ -15,12 +17,10 @@ import org.openlca.app.editors.graphical.layout.NodeLayoutInfo;
 import org.openlca.app.editors.graphical.search.MutableProcessLinkSearchMap;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.EntityCache;
-import org.openlca.core.database.ProcessDao;
 import org.openlca.core.database.ProductSystemDao;
 import org.openlca.core.model.Exchange;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.ModelType;
-import org.openlca.core.model.Process;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.ProcessType;
 import org.openlca.core.model.ProductSystem;
@@ -159,17 +159,11 @@ public class ProcessNode extends Node {
 
 	private void initializeExchangeNodes() {
 		if (this.process.type == ModelType.PROCESS) {
-			ProcessDao dao = new ProcessDao(Database.get());
-			Process p = dao.getForId(this.process.id);
-			if (p == null)
-				return;
-			List<Exchange> list = new ArrayList<>();
-			for (Exchange e : p.exchanges) {
-				if (e.flow.flowType == FlowType.ELEMENTARY_FLOW)
-					continue;
-				list.add(e);
-			}
-			add(new IONode(list));
+			ExchangeLoader loader = new ExchangeLoader(
+					Database.get(), Cache.getEntityCache());
+			List<Exchange> list = loader.load(
+					Arrays.asList(process.id)).get(process.id);
+			add(new IONode(list != null ? list : new ArrayList<>()));
 		} else if (this.process.type == ModelType.PRODUCT_SYSTEM) {
 			ProductSystemDao dao = new ProductSystemDao(Database.get());
 			ProductSystem s = dao.getForId(this.process.id);
@@ -243,6 +237,36 @@ public class ProcessNode extends Node {
 		return getExchangeNodes();
 	}
 
+	/**
+	 * Creates the exchange nodes of the given process nodes if they are not
+	 * yet created. The exchanges of all processes are loaded with a single
+	 * query instead of a query per node.
+	 */
+	public static void loadExchangeNodes(List<ProcessNode> nodes) {
+		if (nodes == null || nodes.isEmpty())
+			return;
+		Map<Long, ProcessNode> processNodes = new HashMap<>();
+		for (ProcessNode node : nodes) {
+			if (!node.getChildren().isEmpty())
+				continue;
+			if (node.process.type == ModelType.PROCESS) {
+				processNodes.put(node.process.id, node);
+			} else {
+				node.initializeExchangeNodes();
+			}
+		}
+		if (processNodes.isEmpty())
+			return;
+		ExchangeLoader loader = new ExchangeLoader(
+				Database.get(), Cache.getEntityCache());
+		Map<Long, List<Exchange>> exchanges = loader.load(
+				processNodes.keySet());
+		for (ProcessNode node : processNodes.values()) {
+			List<Exchange> list = exchanges.get(node.process.id);
+			node.add(new IONode(list != null ? list : new ArrayList<>()));
+		}
+	}
+
 	public Rectangle getXyLayoutConstraints() {
 		return xyLayoutConstraints;
 	}
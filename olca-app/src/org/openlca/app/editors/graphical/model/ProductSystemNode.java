@@ -1,6 +1,8 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openlca.app.db.Database;
 import org.openlca.app.editors.graphical.ProductSystemGraphEditor;
@@ -15,6 +17,9 @@ public class ProductSystemNode extends Node {
 	public final MutableProcessLinkSearchMap linkSearch;
 	public final FlowTable flows = FlowTable.create(Database.get());
 
+	/** Maps the process IDs to the process nodes of this system node. */
+	private final Map<Long, ProcessNode> processNodes = new HashMap<>();
+
 	public ProductSystemNode(ProductSystemGraphEditor editor) {
 		List<ProcessLink> links = editor.getSystemEditor()
 				.getModel().processLinks;
@@ -33,10 +38,33 @@ public class ProductSystemNode extends Node {
 	}
 
 	public ProcessNode getProcessNode(long id) {
-		for (ProcessNode node : getChildren())
-			if (node.process.id == id)
-				return node;
-		return null;
+		return processNodes.get(id);
+	}
+
+	@Override
+	public boolean add(Node child) {
+		if (child instanceof ProcessNode) {
+			ProcessNode node = (ProcessNode) child;
+			processNodes.putIfAbsent(node.process.id, node);
+		}
+		return super.add(child);
+	}
+
+	@Override
+	public boolean remove(Node child) {
+		boolean removed = super.remove(child);
+		if (removed && child instanceof ProcessNode) {
+			ProcessNode node = (ProcessNode) child;
+			if (processNodes.remove(node.process.id, node)) {
+				for (ProcessNode other : getChildren()) {
+					if (other.process.id == node.process.id) {
+						processNodes.put(other.process.id, other);
+						break;
+					}
+				}
+			}
+		}
+		return removed;
 	}
 
 	@Override
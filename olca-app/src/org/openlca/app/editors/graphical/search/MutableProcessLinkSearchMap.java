@@ -1,7 +1,7 @@
 package org.openlca.app.editors.graphical.search;
 
-import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.Collection;
 
@@ -14,22 +14,24 @@ public class MutableProcessLinkSearchMap extends ProcessLinkSearchMap {
 	}
 
 	public void put(ProcessLink link) {
-		int index = remove(link);
-		if (index == -1)
-			index = getAvailableIndex();
-		if (index < data.size())
-			data.set(index, link);
+		if (link == null)
+			return;
+		int slot = take(link);
+		if (slot == -1)
+			slot = getAvailableSlot();
+		if (slot < data.size())
+			data.set(slot, link);
 		else
 			data.add(link);
-		index(link.providerId, index, providerIndex);
-		index(link.processId, index, connectionIndex);
+		slots.put(new LinkKey(link), slot);
+		index(link.providerId, slot, providerIndex);
+		index(link.processId, slot, connectionIndex);
 	}
 
-	private int getAvailableIndex() {
-		for (int index = 0; index < data.size(); index++)
-			if (data.get(index) == null) // previously removed link
-				return index;
-		return data.size();
+	private int getAvailableSlot() {
+		if (freeSlots.isEmpty())
+			return data.size();
+		return freeSlots.removeAt(freeSlots.size() - 1);
 	}
 
 	public void removeAll(Collection<ProcessLink> links) {
@@ -37,23 +39,38 @@ public class MutableProcessLinkSearchMap extends ProcessLinkSearchMap {
 			remove(link);
 	}
 
-	public int remove(ProcessLink link) {
-		int index = data.indexOf(link);
-		if (index < 0)
+	/**
+	 * Removes the link with the same identity as the given link from this map
+	 * and returns its slot. The slot is not released but returned so that it
+	 * can be directly reused by `put`. Returns -1 if there is no such link.
+	 */
+	private int take(ProcessLink link) {
+		if (link == null)
+			return -1;
+		int slot = slots.remove(new LinkKey(link));
+		if (slot < 0)
 			return -1;
-		data.set(index, null);
-		remove(link.providerId, index, providerIndex);
-		remove(link.processId, index, connectionIndex);
-		return index;
+		ProcessLink old = data.get(slot);
+		data.set(slot, null);
+		remove(old.providerId, slot, providerIndex);
+		remove(old.processId, slot, connectionIndex);
+		return slot;
+	}
+
+	public int remove(ProcessLink link) {
+		int slot = take(link);
+		if (slot >= 0)
+			freeSlots.add(slot);
+		return slot;
 	}
 
-	private void remove(long id, int index,
-			TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(id);
-		if (list == null)
+	private void remove(long id, int slot,
+			TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(id);
+		if (set == null)
 			return;
-		list.remove(index);
-		if (list.size() == 0)
+		set.remove(slot);
+		if (set.isEmpty())
 			map.remove(id);
 	}
 
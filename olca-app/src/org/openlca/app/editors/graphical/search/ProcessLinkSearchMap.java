@@ -4,6 +4,7 @@ import gnu.trove.impl.Constants;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
@@ -15,7 +16,11 @@ import org.openlca.core.model.ProcessLink;
 
 /**
  * This is a data structure for searching a set of existing process links by
- * provider and recipient processes.
+ * provider and recipient processes. The links are stored in slots of a list;
+ * the process indices contain the slot positions of the links. A map from the
+ * identity of a link (provider, process, flow, and exchange) to its slot makes
+ * it possible to find and remove a link in constant time. The slots of removed
+ * links are reused for new links.
  */
 public class ProcessLinkSearchMap {
 
@@ -23,36 +28,54 @@ public class ProcessLinkSearchMap {
 	 * A map process-ID -> process links, where the process is a provider means
 	 * it has the product output or waste input that is described by the link.
 	 */
-	final TLongObjectHashMap<TIntArrayList> providerIndex;
+	final TLongObjectHashMap<TIntHashSet> providerIndex;
 
 	/**
 	 * A map process-ID -> process links, where the process is connected by a
 	 * product input or waste output to another process.
 	 */
-	TLongObjectHashMap<TIntArrayList> connectionIndex;
+	final TLongObjectHashMap<TIntHashSet> connectionIndex;
 
-	ArrayList<ProcessLink> data;
+	/** The links in their slots; removed links are set to null. */
+	final ArrayList<ProcessLink> data;
+
+	/** Maps the identity of a link to its slot in the data list. */
+	final TObjectIntHashMap<LinkKey> slots;
+
+	/** The slots of removed links that can be reused. */
+	final TIntArrayList freeSlots = new TIntArrayList();
 
 	public ProcessLinkSearchMap(Collection<ProcessLink> links) {
-		providerIndex = new TLongObjectHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1L);
-		connectionIndex = new TLongObjectHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1L);
-		data = new ArrayList<>(links);
-		for (int i = 0; i < data.size(); i++) {
-			ProcessLink link = data.get(i);
-			index(link.providerId, i, providerIndex);
-			index(link.processId, i, connectionIndex);
+		providerIndex = new TLongObjectHashMap<>(Constants.DEFAULT_CAPACITY,
+				Constants.DEFAULT_LOAD_FACTOR, -1L);
+		connectionIndex = new TLongObjectHashMap<>(Constants.DEFAULT_CAPACITY,
+				Constants.DEFAULT_LOAD_FACTOR, -1L);
+		int capacity = Math.max(links.size(), Constants.DEFAULT_CAPACITY);
+		slots = new TObjectIntHashMap<>(capacity,
+				Constants.DEFAULT_LOAD_FACTOR, -1);
+		data = new ArrayList<>(links.size());
+		for (ProcessLink link : links) {
+			if (link == null)
+				continue;
+			LinkKey key = new LinkKey(link);
+			if (slots.containsKey(key))
+				continue;
+			int slot = data.size();
+			data.add(link);
+			slots.put(key, slot);
+			index(link.providerId, slot, providerIndex);
+			index(link.processId, slot, connectionIndex);
 		}
 	}
 
-	void index(long key, int val, TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(key);
-		if (list == null) {
-			list = new TIntArrayList(Constants.DEFAULT_CAPACITY, -1);
-			map.put(key, list);
+	void index(long key, int slot, TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(key);
+		if (set == null) {
+			set = new TIntHashSet(Constants.DEFAULT_CAPACITY,
+					Constants.DEFAULT_LOAD_FACTOR, -1);
+			map.put(key, set);
 		}
-		if (list.contains(val))
-			return;
-		list.add(val);
+		set.add(slot);
 	}
 
 	/**
@@ -64,14 +87,25 @@ public class ProcessLinkSearchMap {
 		// presentations of product systems and there can be a lot of links
 		// in some kind of product systems (e.g. from IO-databases) we do
 		// not just merge the incoming and outgoing links here
-		TIntHashSet intSet = new TIntHashSet(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
-		TIntArrayList list = providerIndex.get(processId);
-		if (list != null)
-			intSet.addAll(list);
-		list = connectionIndex.get(processId);
-		if (list != null)
-			intSet.addAll(list);
-		return getLinks(intSet.iterator());
+		TIntHashSet provided = providerIndex.get(processId);
+		TIntHashSet connected = connectionIndex.get(processId);
+		if (provided == null && connected == null)
+			return Collections.emptyList();
+		if (provided == null)
+			return getLinks(connected.iterator());
+		if (connected == null)
+			return getLinks(provided.iterator());
+		List<ProcessLink> links = getLinks(provided.iterator());
+		TIntIterator it = connected.iterator();
+		while (it.hasNext()) {
+			int slot = it.next();
+			if (provided.contains(slot))
+				continue;
+			ProcessLink link = data.get(slot);
+			if (link != null)
+				links.add(link);
+		}
+		return links;
 	}
 
 	/**
@@ -90,12 +124,19 @@ public class ProcessLinkSearchMap {
 		return getLinks(processId, providerIndex);
 	}
 
+	/** Returns true if the map contains a link with the same identity. */
+	public boolean contains(ProcessLink link) {
+		if (link == null)
+			return false;
+		return slots.containsKey(new LinkKey(link));
+	}
+
 	private List<ProcessLink> getLinks(long processId,
-			TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(processId);
-		if (list == null)
+			TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(processId);
+		if (set == null)
 			return Collections.emptyList();
-		return getLinks(list.iterator());
+		return getLinks(set.iterator());
 	}
 
 	private List<ProcessLink> getLinks(TIntIterator iterator) {
@@ -107,4 +148,45 @@ public class ProcessLinkSearchMap {
 		}
 		return links;
 	}
+
+	/**
+	 * The identity of a process link. We do not use the link itself as key
+	 * because the link is a mutable entity.
+	 */
+	static final class LinkKey {
+
+		final long providerId;
+		final long processId;
+		final long flowId;
+		final long exchangeId;
+
+		LinkKey(ProcessLink link) {
+			this.providerId = link.providerId;
+			this.processId = link.processId;
+			this.flowId = link.flowId;
+			this.exchangeId = link.exchangeId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof LinkKey))
+				return false;
+			LinkKey other = (LinkKey) obj;
+			return providerId == other.providerId
+					&& processId == other.processId
+					&& flowId == other.flowId
+					&& exchangeId == other.exchangeId;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = providerId;
+			h = 31 * h + processId;
+			h = 31 * h + flowId;
+			h = 31 * h + exchangeId;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
 }
@@ -27,6 +27,7 @@ import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.Labels;
+import org.openlca.app.util.tables.LazyTable;
 import org.openlca.app.util.tables.TableClipboard;
 import org.openlca.app.util.tables.Tables;
 import org.openlca.app.util.viewers.Viewers;
@@ -61,6 +62,7 @@ class ImpactFactorTable {
 	private ImpactMethodEditor editor;
 	private ImpactCategory category;
 	private TableViewer viewer;
+	private LazyTable<ImpactFactor> model;
 
 	public ImpactFactorTable(ImpactMethodEditor editor) {
 		this.editor = editor;
@@ -68,14 +70,15 @@ class ImpactFactorTable {
 	}
 
 	void refresh() {
-		viewer.refresh();
+		model.refresh();
 	}
 
 	public void render(Composite parent, Section section) {
 		viewer = Tables.createViewer(parent, getColumnHeaders());
 		FactorLabelProvider label = new FactorLabelProvider();
-		Viewers.sortByLabels(viewer, label, 0, 1, 2, 4, 5);
-		Viewers.sortByDouble(viewer, (ImpactFactor f) -> f.value, 3);
+		model = LazyTable.<ImpactFactor> on(viewer)
+				.sortByColumnText(label::getColumnText, 0, 1, 2, 4, 5)
+				.sortByDouble(f -> f.value, 3);
 		viewer.setLabelProvider(label);
 		ModifySupport<ImpactFactor> support = new ModifySupport<>(viewer);
 		support.bind(FLOW_PROPERTY, new FlowPropertyModifier());
@@ -111,13 +114,13 @@ class ImpactFactorTable {
 				editor.getParameterSupport().evaluate();
 			}
 			editor.setDirty(true);
-			viewer.refresh();
+			model.refresh();
 		});
 	}
 
 	void setImpactCategory(ImpactCategory impact, boolean sort) {
 		if (impact == null) {
-			viewer.setInput(Collections.emptyList());
+			model.setInput(Collections.emptyList());
 			this.category = null;
 			return;
 		}
@@ -125,7 +128,7 @@ class ImpactFactorTable {
 		List<ImpactFactor> factors = impact.impactFactors;
 		if (sort)
 			sortFactors(factors);
-		viewer.setInput(factors);
+		model.setInput(factors);
 	}
 
 	private void sortFactors(List<ImpactFactor> factors) {
@@ -188,7 +191,7 @@ class ImpactFactorTable {
 			f.value = 1.0;
 			category.impactFactors.add(f);
 		}
-		viewer.setInput(category.impactFactors);
+		model.setInput(category.impactFactors);
 		editor.setDirty(true);
 	}
 
@@ -205,7 +208,7 @@ class ImpactFactorTable {
 		List<ImpactFactor> factors = Viewers.getAllSelected(viewer);
 		for (ImpactFactor factor : factors)
 			category.impactFactors.remove(factor);
-		viewer.setInput(category.impactFactors);
+		model.setInput(category.impactFactors);
 		editor.setDirty(true);
 	}
 
@@ -1,16 +1,28 @@
 package org.openlca.app.editors.lcia_methods.shapefiles;
 
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.openlca.app.M;
 import org.openlca.app.db.Database;
 import org.openlca.app.editors.processes.kml.KmlUtil;
 import org.openlca.core.database.LocationDao;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ParameterDao;
 import org.openlca.core.model.ImpactMethod;
 import org.openlca.core.model.ImpactMethod.ParameterMean;
@@ -24,16 +36,31 @@ import org.python.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+
+/**
+ * Evaluates the shape file parameters for the locations in the database. The
+ * locations are evaluated in parallel. The hashes of the evaluated KMZ data
+ * and a fingerprint of the shape files and parameters are stored in the
+ * shape file folder of the method; when the job runs again, only the
+ * locations with changed geometries are evaluated, or all locations when the
+ * shape files or parameters changed.
+ */
 class EvaluateLocationsJob implements IRunnableWithProgress {
 
+	private static final String STATE_FILE = "evaluated_locations.json";
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private ImpactMethod method;
 	private ShapeFileFolder shapeFileFolder;
 	private ParameterCache parameterCache;
-	private ParameterCalculator parameterCalculator;
-	private LocationDao locationDao;
+	private ThreadLocal<ParameterCalculator> parameterCalculator;
 	private IProgressMonitor monitor;
 	private List<String> shapeFiles;
+	private State state;
+
+	/** Parsed geometries: KMZ hash -> KML feature. */
+	private final Map<String, KmlFeature> features = new ConcurrentHashMap<>();
 
 	public EvaluateLocationsJob(ImpactMethod method) {
 		this.method = method;
@@ -44,9 +71,23 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		this.monitor = monitor;
 		List<LocationDescriptor> locations = init();
 		beginTask(M.EvaluatingLocations, locations.size());
-		for (LocationDescriptor location : locations)
-			if (!isCanceled())
-				evaluate(location);
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (LocationDescriptor location : locations) {
+			pool.execute(() -> {
+				if (!isCanceled())
+					evaluate(location);
+			});
+		}
+		pool.shutdown();
+		while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+			if (isCanceled()) {
+				pool.shutdownNow();
+			}
+		}
+		if (!isCanceled()) {
+			writeState(ShapeFileUtils.getFolder(method), state);
+		}
 		done();
 	}
 
@@ -63,19 +104,39 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		ParameterMean meanFn = method.parameterMean != null
 				? method.parameterMean
 				: ParameterMean.WEIGHTED_MEAN;
-		parameterCalculator = new ParameterCalculator(parameters,
-				shapeFileFolder, meanFn);
-		locationDao = new LocationDao(Database.get());
-		return locationDao.getDescriptors();
+		// the calculator is not shared between the threads
+		parameterCalculator = ThreadLocal.withInitial(() -> new ParameterCalculator(
+				parameters, shapeFileFolder, meanFn));
+		String fingerprint = fingerprint(parameters);
+		state = readState(ShapeFileUtils.getFolder(method));
+		if (state == null || !fingerprint.equals(state.fingerprint)) {
+			state = new State();
+			state.fingerprint = fingerprint;
+		}
+		return new LocationDao(Database.get()).getDescriptors();
 	}
 
 	private void evaluate(LocationDescriptor location) {
 		subTask(location.name);
-		for (String shapeFile : ShapeFileUtils.getShapeFiles(method))
-			parameterCache.remove(location.id, shapeFile);
-		KmlFeature feature = getKmlFeature(location);
-		if (feature != null)
-			parameterCalculator.calculate(location.id, feature);
+		try {
+			byte[] kmz = getKmz(location);
+			String hash = kmz == null ? "" : DigestUtils.sha1Hex(kmz);
+			String key = Long.toString(location.id);
+			if (hash.equals(state.locations.get(key))) {
+				worked();
+				return; // nothing changed since the last evaluation
+			}
+			synchronized (parameterCache) {
+				for (String shapeFile : shapeFiles)
+					parameterCache.remove(location.id, shapeFile);
+			}
+			KmlFeature feature = getKmlFeature(location, kmz, hash);
+			if (feature != null)
+				parameterCalculator.get().calculate(location.id, feature);
+			state.locations.put(key, hash);
+		} catch (Exception e) {
+			log.error("Failed to evaluate location " + location.name, e);
+		}
 		worked();
 	}
 
@@ -99,15 +160,29 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		return shapeFileParams;
 	}
 
-	private KmlFeature getKmlFeature(LocationDescriptor location) {
-		byte[] kmz = locationDao.getForId(location.id).kmz;
+	private byte[] getKmz(LocationDescriptor location) throws Exception {
+		String sql = "select kmz from tbl_locations where id = " + location.id;
+		byte[][] kmz = new byte[1][];
+		NativeSql.on(Database.get()).query(sql, r -> {
+			kmz[0] = r.getBytes(1);
+			return false;
+		});
+		return kmz[0];
+	}
+
+	private KmlFeature getKmlFeature(LocationDescriptor location, byte[] kmz,
+			String hash) {
 		if (kmz == null)
 			return null;
+		KmlFeature cached = features.get(hash);
+		if (cached != null)
+			return cached;
 		String kml = KmlUtil.toKml(kmz);
 		if (Strings.isNullOrEmpty(kml))
 			return null;
 		try {
 			KmlFeature feature = KmlFeature.parse(kml);
+			features.put(hash, feature);
 			return feature;
 		} catch (Exception e) {
 			log.warn("Could not parse kml data for location " + location.name);
@@ -115,6 +190,78 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		return null;
 	}
 
+	/**
+	 * Creates a fingerprint of the shape files and parameters. The locations
+	 * need to be evaluated again when this fingerprint changes.
+	 */
+	private String fingerprint(List<Parameter> parameters) {
+		StringBuilder b = new StringBuilder();
+		File folder = ShapeFileUtils.getFolder(method);
+		for (String shapeFile : shapeFiles) {
+			b.append(shapeFile);
+			for (String ext : new String[] { ".shp", ".dbf", ".shx" }) {
+				File file = new File(folder, shapeFile + ext);
+				b.append(';').append(file.length())
+						.append(';').append(file.lastModified());
+			}
+		}
+		List<String> names = new ArrayList<>();
+		for (Parameter param : parameters) {
+			names.add(param.name + "@" + param.externalSource);
+		}
+		Collections.sort(names);
+		b.append(names).append(method.parameterMean);
+		return DigestUtils.sha1Hex(b.toString());
+	}
+
+	/**
+	 * Removes the given location from the evaluation state in the given
+	 * shape file folder so that it is evaluated again when the job runs the
+	 * next time. This needs to be called when the cached parameter values of
+	 * the location are deleted.
+	 */
+	static void invalidate(File folder, long locationId) {
+		State state = readState(folder);
+		if (state == null)
+			return;
+		if (state.locations.remove(Long.toString(locationId)) != null) {
+			writeState(folder, state);
+		}
+	}
+
+	private static State readState(File folder) {
+		if (folder == null)
+			return null;
+		File file = new File(folder, STATE_FILE);
+		if (!file.exists())
+			return null;
+		try (Reader reader = Files.newBufferedReader(file.toPath(),
+				StandardCharsets.UTF_8)) {
+			State s = new Gson().fromJson(reader, State.class);
+			if (s == null || s.locations == null)
+				return null;
+			s.locations = new ConcurrentHashMap<>(s.locations);
+			return s;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(EvaluateLocationsJob.class);
+			log.warn("Could not read evaluation state " + file, e);
+			return null;
+		}
+	}
+
+	private static void writeState(File folder, State state) {
+		if (folder == null)
+			return;
+		File file = new File(folder, STATE_FILE);
+		try (Writer writer = Files.newBufferedWriter(file.toPath(),
+				StandardCharsets.UTF_8)) {
+			new Gson().toJson(state, writer);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(EvaluateLocationsJob.class);
+			log.error("Could not write evaluation state " + file, e);
+		}
+	}
+
 	private void beginTask(String name) {
 		beginTask(name, IProgressMonitor.UNKNOWN);
 	}
@@ -147,4 +294,11 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		return monitor.isCanceled();
 	}
 
+	/** The stored state of the last evaluation. */
+	private static class State {
+		String fingerprint;
+		/** location ID -> hash of the evaluated KMZ data. */
+		Map<String, String> locations = new ConcurrentHashMap<>();
+	}
+
 }
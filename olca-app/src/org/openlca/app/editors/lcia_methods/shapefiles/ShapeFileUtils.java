@@ -72,6 +72,16 @@ public class ShapeFileUtils {
 		return new FileStore(Database.get()).getFolder(method);
 	}
 
+	/**
+	 * Marks the given location as not evaluated for the shape files of the
+	 * given LCIA method. Call this when the cached parameter values of the
+	 * location are removed so that they are calculated again.
+	 */
+	public static void invalidateLocation(ImpactMethodDescriptor method,
+			long locationId) {
+		EvaluateLocationsJob.invalidate(getFolder(method), locationId);
+	}
+
 	/**
 	 * Check if the mandatory files that define the shape-file are available
 	 * (see http://en.wikipedia.org/wiki/Shapefile).
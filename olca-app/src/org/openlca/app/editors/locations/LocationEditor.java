@@ -72,6 +72,7 @@ public class LocationEditor extends ModelEditor<Location> {
 			ParameterCache cache = new ParameterCache(folder);
 			for (String shapeFile : ShapeFileUtils.getShapeFiles(method))
 				cache.remove(getModel().id, shapeFile);
+			ShapeFileUtils.invalidateLocation(method, getModel().id);
 		}
 	}
 
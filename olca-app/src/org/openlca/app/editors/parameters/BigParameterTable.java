@@ -45,6 +45,7 @@ import org.openlca.app.util.Controls;
 import org.openlca.app.util.Info;
 import org.openlca.app.util.Labels;
 import org.openlca.app.util.UI;
+import org.openlca.app.util.tables.LazyTable;
 import org.openlca.app.util.tables.Tables;
 import org.openlca.app.util.viewers.Viewers;
 import org.openlca.core.database.IDatabase;
@@ -61,8 +62,6 @@ import org.openlca.core.model.Version;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
-import org.openlca.expressions.FormulaInterpreter;
-import org.openlca.expressions.Scope;
 import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -97,7 +96,9 @@ public class BigParameterTable extends SimpleFormEditor {
 	private class Page extends FormPage {
 
 		private final List<Param> params = new ArrayList<>();
+		private final ParameterGraph graph = new ParameterGraph();
 		private TableViewer table;
+		private LazyTable<Param> model;
 		private Text filter;
 		private FilterCombo filterCombo;
 
@@ -120,14 +121,11 @@ public class BigParameterTable extends SimpleFormEditor {
 
 			Runnable doFilter = () -> {
 				String t = filter.getText();
-				if (Strings.nullOrEmpty(t)
-						&& filterCombo.type != FilterCombo.ERRORS) {
-					table.setInput(params);
+				int type = filterCombo.type;
+				if (Strings.nullOrEmpty(t) && type != FilterCombo.ERRORS) {
+					model.setFilter(null);
 				} else {
-					List<Param> filtered = params.stream()
-							.filter(p -> p.matches(t, filterCombo.type))
-							.collect(Collectors.toList());
-					table.setInput(filtered);
+					model.setFilter(p -> p.matches(t, type));
 				}
 			};
 			filter.addModifyListener(e -> doFilter.run());
@@ -140,15 +138,16 @@ public class BigParameterTable extends SimpleFormEditor {
 			Tables.bindColumnWidths(table, w, w, w, w, w);
 			Label label = new Label();
 			table.setLabelProvider(label);
-			Viewers.sortByLabels(table, label, 0, 1, 3, 4);
-			Viewers.sortByDouble(table, (Param p) -> p.parameter.value, 2);
+			model = LazyTable.<Param> on(table)
+					.sortByColumnText(label::getColumnText, 0, 1, 3, 4)
+					.sortByDouble(p -> p.parameter.value, 2);
 
 			bindActions();
 			mform.reflow(true);
 			App.runWithProgress(
 					"Loading parameters ...",
 					this::initParams,
-					() -> table.setInput(params));
+					() -> model.setInput(params));
 		}
 
 		private void bindActions() {
@@ -173,8 +172,8 @@ public class BigParameterTable extends SimpleFormEditor {
 					M.EvaluateAllFormulas, Icon.RUN.descriptor(), () -> {
 						App.runWithProgress(M.EvaluateAllFormulas,
 								this::evaluateFormulas, () -> {
-									table.setInput(params);
 									filter.setText("");
+									model.setInput(params);
 								});
 					});
 			Action onEdit = Actions.create(M.Edit,
@@ -208,9 +207,10 @@ public class BigParameterTable extends SimpleFormEditor {
 				Param p = new Param();
 				p.parameter = pr;
 				params.add(p);
-				if (pr.scope == ParameterScope.GLOBAL)
-					return;
-				p.ownerID = owners.get(pr.id);
+				if (pr.scope != ParameterScope.GLOBAL) {
+					p.ownerID = owners.get(pr.id);
+				}
+				p.node = graph.add(p.ownerID, pr);
 				if (p.ownerID == null)
 					return;
 				if (pr.scope == ParameterScope.PROCESS) {
@@ -219,54 +219,20 @@ public class BigParameterTable extends SimpleFormEditor {
 					p.owner = methods.get(p.ownerID);
 				}
 			});
+			graph.link();
 
 			Collections.sort(params);
 		}
 
 		private void evaluateFormulas() {
-			FormulaInterpreter fi = buildInterpreter();
-			for (Param param : params) {
-				Parameter p = param.parameter;
-				if (p.isInputParameter) {
-					param.evalError = false;
-					continue;
-				}
-				Scope scope = param.ownerID == null
-						? fi.getGlobalScope()
-						: fi.getScope(param.ownerID);
-				try {
-					p.value = scope.eval(p.formula);
-					param.evalError = false;
-				} catch (Exception e) {
-					param.evalError = true;
-				}
-			}
+			graph.evalAll();
+			syncErrors();
 		}
 
-		/**
-		 * Bind the parameter values and formulas to the respective scopes of a
-		 * formula interpreter.
-		 */
-		private FormulaInterpreter buildInterpreter() {
-			FormulaInterpreter fi = new FormulaInterpreter();
+		private void syncErrors() {
 			for (Param param : params) {
-				Scope scope = null;
-				if (param.ownerID == null) {
-					scope = fi.getGlobalScope();
-				} else {
-					scope = fi.getScope(param.ownerID);
-					if (scope == null) {
-						scope = fi.createScope(param.ownerID);
-					}
-				}
-				Parameter p = param.parameter;
-				if (p.isInputParameter) {
-					scope.bind(p.name, Double.toString(p.value));
-				} else {
-					scope.bind(p.name, p.formula);
-				}
+				param.evalError = param.node.error;
 			}
-			return fi;
 		}
 
 		private void onEdit() {
@@ -294,7 +260,6 @@ public class BigParameterTable extends SimpleFormEditor {
 
 			// build dialog with validation
 			InputDialog dialog = null;
-			FormulaInterpreter fi = null;
 			if (p.isInputParameter) {
 				dialog = new InputDialog(UI.shell(),
 						"Edit value", "Set a new parameter value",
@@ -307,15 +272,11 @@ public class BigParameterTable extends SimpleFormEditor {
 							}
 						});
 			} else {
-				fi = buildInterpreter();
-				Scope scope = param.ownerID == null
-						? fi.getGlobalScope()
-						: fi.getScope(param.ownerID);
 				dialog = new InputDialog(UI.shell(),
 						"Edit formula", "Set a new parameter formula",
 						p.formula, s -> {
 							try {
-								scope.eval(s);
+								graph.check(param.node, s);
 								return null;
 							} catch (Exception e) {
 								return s + " " + M.IsInvalidFormula;
@@ -341,10 +302,7 @@ public class BigParameterTable extends SimpleFormEditor {
 			} else {
 				try {
 					p.formula = val;
-					Scope scope = param.ownerID == null
-							? fi.getGlobalScope()
-							: fi.getScope(param.ownerID);
-					p.value = scope.eval(val);
+					p.value = graph.check(param.node, val);
 					param.evalError = false;
 				} catch (Exception e) {
 					param.evalError = true;
@@ -358,6 +316,12 @@ public class BigParameterTable extends SimpleFormEditor {
 			Version.incUpdate(p);
 			param.parameter = dao.update(p);
 
+			// evaluate the parameters that depend on the changed parameter;
+			// note that their new values are not saved in the database, the
+			// same as for the evaluation of all formulas
+			graph.update(param.node, param.parameter);
+			syncErrors();
+
 			// update the owner; we also close a possible
 			// opened editor just to make sure that the
 			// user does not get confused with a state that
@@ -405,6 +369,9 @@ public class BigParameterTable extends SimpleFormEditor {
 
 		Parameter parameter;
 
+		/** The node of the parameter in the dependency graph. */
+		ParameterGraph.Node node;
+
 		boolean evalError;
 
 		@Override
@@ -0,0 +1,320 @@
+package org.openlca.app.editors.parameters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.core.model.Parameter;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.Scope;
+
+/**
+ * The dependency graph of the parameters in a database. The variables of the
+ * parameter formulas are extracted and resolved only once when a parameter is
+ * added (local parameters shadow global parameters with the same name). The
+ * formulas are then evaluated in topological order where only the values of
+ * the direct dependencies are bound to the interpreter; thus, the interpreter
+ * never needs to resolve and evaluate other formulas recursively. The global
+ * parameters are evaluated first and then the local scopes, which are
+ * independent from each other, in parallel. When a parameter is changed,
+ * only this parameter and the parameters that depend on it are evaluated
+ * again.
+ */
+class ParameterGraph {
+
+	private final List<Node> nodes = new ArrayList<>();
+	private final Map<String, Node> globals = new HashMap<>();
+	private final Map<Long, Map<String, Node>> locals = new HashMap<>();
+
+	/**
+	 * Adds the given parameter with the given owner (null for global
+	 * parameters) to the graph. The dependencies of the parameters are
+	 * resolved when `link` is called.
+	 */
+	Node add(Long ownerID, Parameter parameter) {
+		Node node = new Node(ownerID, parameter);
+		nodes.add(node);
+		if (node.name == null)
+			return node;
+		if (ownerID == null) {
+			globals.put(node.name, node);
+		} else {
+			Map<String, Node> scope = locals.get(ownerID);
+			if (scope == null) {
+				scope = new HashMap<>();
+				locals.put(ownerID, scope);
+			}
+			scope.put(node.name, node);
+		}
+		return node;
+	}
+
+	/** Resolves the dependencies of all parameters and sorts the graph. */
+	void link() {
+		for (Node node : nodes) {
+			node.dependents.clear();
+		}
+		for (Node node : nodes) {
+			resolve(node);
+		}
+		sort();
+	}
+
+	private void resolve(Node node) {
+		for (Node input : node.inputs) {
+			input.dependents.remove(node);
+		}
+		node.inputs.clear();
+		node.selfReference = false;
+		Parameter p = node.parameter;
+		if (p.isInputParameter)
+			return;
+		for (String var : variables(p.formula)) {
+			Node input = lookup(node.ownerID, var);
+			if (input == null) {
+				// an unknown variable or a function name
+				continue;
+			}
+			if (input == node) {
+				node.selfReference = true;
+				continue;
+			}
+			if (!node.inputs.contains(input)) {
+				node.inputs.add(input);
+				input.dependents.add(node);
+			}
+		}
+	}
+
+	private Node lookup(Long ownerID, String name) {
+		if (ownerID != null) {
+			Map<String, Node> scope = locals.get(ownerID);
+			Node local = scope != null ? scope.get(name) : null;
+			if (local != null)
+				return local;
+		}
+		return globals.get(name);
+	}
+
+	/**
+	 * Sorts the nodes in topological order (Kahn's algorithm). Nodes that are
+	 * part of a cycle or depend on a cycle get no position.
+	 */
+	private void sort() {
+		Map<Node, Integer> inDegree = new HashMap<>();
+		Deque<Node> queue = new ArrayDeque<>();
+		for (Node node : nodes) {
+			node.position = -1;
+			inDegree.put(node, node.inputs.size());
+			if (node.inputs.isEmpty()) {
+				queue.add(node);
+			}
+		}
+		int position = 0;
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			node.position = position++;
+			for (Node dependent : node.dependents) {
+				int degree = inDegree.get(dependent) - 1;
+				inDegree.put(dependent, degree);
+				if (degree == 0) {
+					queue.add(dependent);
+				}
+			}
+		}
+	}
+
+	/** Evaluates all parameters of the graph. */
+	void evalAll() {
+		List<Node> global = new ArrayList<>();
+		Map<Long, List<Node>> byOwner = new HashMap<>();
+		for (Node node : nodes) {
+			if (node.ownerID == null) {
+				global.add(node);
+				continue;
+			}
+			List<Node> scope = byOwner.get(node.ownerID);
+			if (scope == null) {
+				scope = new ArrayList<>();
+				byOwner.put(node.ownerID, scope);
+			}
+			scope.add(node);
+		}
+		evalSorted(global);
+		byOwner.values().parallelStream().forEach(this::evalSorted);
+	}
+
+	/**
+	 * Updates the given node with the given (new) version of its parameter
+	 * and evaluates it and all parameters that depend on it.
+	 */
+	void update(Node node, Parameter parameter) {
+		node.parameter = parameter;
+		resolve(node);
+		sort();
+		evalSorted(cone(node));
+	}
+
+	/**
+	 * Evaluates the given formula in the scope of the given node without
+	 * changing the graph. Throws an exception if the formula is invalid or if
+	 * it would create a cycle.
+	 */
+	double check(Node node, String formula) throws Exception {
+		Set<Node> cone = new HashSet<>(cone(node));
+		List<Node> inputs = new ArrayList<>();
+		for (String var : variables(formula)) {
+			Node input = lookup(node.ownerID, var);
+			if (input == null)
+				continue;
+			if (cone.contains(input))
+				throw new IllegalArgumentException(
+						"cyclic reference to " + var);
+			if (input.error)
+				throw new IllegalArgumentException(
+						"invalid formula of " + var);
+			inputs.add(input);
+		}
+		return eval(formula, inputs);
+	}
+
+	/**
+	 * Returns the given node and all nodes that depend directly or indirectly
+	 * on it.
+	 */
+	private List<Node> cone(Node node) {
+		Set<Node> visited = new HashSet<>();
+		Deque<Node> queue = new ArrayDeque<>();
+		visited.add(node);
+		queue.add(node);
+		while (!queue.isEmpty()) {
+			for (Node dependent : queue.poll().dependents) {
+				if (visited.add(dependent)) {
+					queue.add(dependent);
+				}
+			}
+		}
+		return new ArrayList<>(visited);
+	}
+
+	private void evalSorted(List<Node> list) {
+		Collections.sort(list, Comparator.comparingInt(n -> n.position));
+		for (Node node : list) {
+			eval(node);
+		}
+	}
+
+	private void eval(Node node) {
+		Parameter p = node.parameter;
+		if (p.isInputParameter) {
+			node.error = false;
+			return;
+		}
+		if (node.selfReference || node.position < 0) {
+			node.error = true;
+			return;
+		}
+		for (Node input : node.inputs) {
+			if (input.error) {
+				node.error = true;
+				return;
+			}
+		}
+		try {
+			p.value = eval(p.formula, node.inputs);
+			node.error = false;
+		} catch (Exception e) {
+			node.error = true;
+		}
+	}
+
+	/**
+	 * Evaluates the formula where only the current values of the given inputs
+	 * are bound to the interpreter.
+	 */
+	private double eval(String formula, Collection<Node> inputs)
+			throws Exception {
+		FormulaInterpreter fi = new FormulaInterpreter();
+		Scope scope = fi.getGlobalScope();
+		for (Node input : inputs) {
+			scope.bind(input.parameter.name.trim(),
+					Double.toString(input.parameter.value));
+		}
+		return scope.eval(formula);
+	}
+
+	/**
+	 * Returns the (lower case) names of the variables and functions in the
+	 * given formula. Text in double quotes is skipped.
+	 */
+	static Set<String> variables(String formula) {
+		Set<String> vars = new HashSet<>();
+		if (formula == null)
+			return vars;
+		int n = formula.length();
+		int i = 0;
+		while (i < n) {
+			char c = formula.charAt(i);
+			if (c == '"') {
+				int end = formula.indexOf('"', i + 1);
+				i = end < 0 ? n : end + 1;
+				continue;
+			}
+			if (Character.isDigit(c) || c == '.') {
+				// skip numbers including exponents like 1.5e-3
+				while (i < n && (Character.isLetterOrDigit(formula.charAt(i))
+						|| formula.charAt(i) == '.'))
+					i++;
+				continue;
+			}
+			if (!Character.isLetter(c) && c != '_') {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < n && (Character.isLetterOrDigit(formula.charAt(i))
+					|| formula.charAt(i) == '_'))
+				i++;
+			vars.add(formula.substring(start, i).toLowerCase());
+		}
+		return vars;
+	}
+
+	static class Node {
+
+		final Long ownerID;
+		final String name;
+		Parameter parameter;
+
+		/** True if the last evaluation of the parameter failed. */
+		boolean error;
+
+		/** True if the formula of the parameter references itself. */
+		private boolean selfReference;
+
+		/**
+		 * The position of the node in the topological order; -1 if it is part
+		 * of a cyclic dependency.
+		 */
+		private int position;
+
+		private final List<Node> inputs = new ArrayList<>();
+		private final Set<Node> dependents = new HashSet<>();
+
+		private Node(Long ownerID, Parameter parameter) {
+			this.ownerID = ownerID;
+			this.parameter = parameter;
+			this.name = parameter.name == null
+					? null
+					: parameter.name.trim().toLowerCase();
+		}
+	}
+}
@@ -7,8 +7,6 @@ import java.util.Objects;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.viewers.TableViewer;
-import org.eclipse.jface.viewers.Viewer;
-import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.TableItem;
@@ -27,6 +25,7 @@ import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.UI;
+import org.openlca.app.util.tables.LazyTable;
 import org.openlca.app.util.tables.TableClipboard;
 import org.openlca.app.util.tables.Tables;
 import org.openlca.app.util.viewers.Viewers;
@@ -52,6 +51,7 @@ import org.openlca.util.Strings;
 class ExchangeTable {
 
 	TableViewer viewer;
+	private LazyTable<Exchange> model;
 
 	private final boolean forInputs;
 	private final ProcessEditor editor;
@@ -97,9 +97,12 @@ class ExchangeTable {
 		viewer = Tables.createViewer(composite, getColumns());
 		label = new ExchangeLabel(editor);
 		viewer.setLabelProvider(label);
+		model = LazyTable.<Exchange> on(viewer)
+				.sortByColumnText(label::getColumnText, 0, 1, 3, 4, 5, 6, 7, 8)
+				.sortByDouble(e -> e.amount, 2);
+		model.setFilter(this::isShown);
 		bindModifiers();
 		Tables.onDrop(viewer, this::add);
-		viewer.addFilter(new Filter());
 		bindActions(section);
 		bindDoubleClick(viewer);
 		if (editor.hasAnyComment("exchanges")) {
@@ -107,14 +110,12 @@ class ExchangeTable {
 		} else {
 			Tables.bindColumnWidths(viewer, 0.2, 0.15, 0.1, 0.08, 0.08, 0.08, 0.08, 0.08, 0.08, 0.07);
 		}
-		Viewers.sortByLabels(viewer, label, 0, 1, 3, 4, 5, 6, 7, 8);
-		Viewers.sortByDouble(viewer, (Exchange e) -> e.amount, 2);
 		viewer.getTable().getColumns()[2].setAlignment(SWT.RIGHT);
 		viewer.getTable().getColumns()[4].setAlignment(SWT.RIGHT);
 	}
 
 	void setInput(Process process) {
-		viewer.setInput(process.exchanges);
+		model.setInput(process.exchanges);
 	}
 
 	private void bindModifiers() {
@@ -230,7 +231,7 @@ class ExchangeTable {
 		if (!Exchanges.canRemove(process, selection))
 			return;
 		selection.forEach(e -> process.exchanges.remove(e));
-		viewer.setInput(process.exchanges);
+		model.setInput(process.exchanges);
 		editor.setDirty(true);
 		editor.postEvent(editor.EXCHANGES_CHANGED, this);
 	}
@@ -258,7 +259,7 @@ class ExchangeTable {
 		}
 		if (!added)
 			return;
-		viewer.setInput(process.exchanges);
+		model.setInput(process.exchanges);
 		editor.setDirty(true);
 		editor.postEvent(editor.EXCHANGES_CHANGED, this);
 	}
@@ -274,7 +275,7 @@ class ExchangeTable {
 			e.internalId = ++process.lastInternalId;
 			process.exchanges.add(e);
 		}
-		viewer.setInput(process.exchanges);
+		model.setInput(process.exchanges);
 		editor.setDirty(true);
 		editor.postEvent(editor.EXCHANGES_CHANGED, this);
 		editor.getParameterSupport().evaluate();
@@ -328,17 +329,14 @@ class ExchangeTable {
 		return true;
 	}
 
-	private class Filter extends ViewerFilter {
-		@Override
-		public boolean select(Viewer viewer, Object parent, Object obj) {
-			if (!(obj instanceof Exchange))
-				return false;
-			Exchange e = (Exchange) obj;
-			if (e.isAvoided)
-				return e.isInput != forInputs;
-			else
-				return e.isInput == forInputs;
-		}
+	/** Returns true if the given exchange is shown in this table. */
+	private boolean isShown(Exchange e) {
+		if (e == null)
+			return false;
+		if (e.isAvoided)
+			return e.isInput != forInputs;
+		else
+			return e.isInput == forInputs;
 	}
 
 	private class FormulaSwitchAction extends Action {
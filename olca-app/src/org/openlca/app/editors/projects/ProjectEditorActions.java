@@ -10,6 +10,7 @@ import org.openlca.app.editors.reports.ReportViewer;
 import org.openlca.app.editors.reports.Reports;
 import org.openlca.app.editors.reports.model.Report;
 import org.openlca.app.editors.reports.model.ReportCalculator;
+import org.openlca.app.editors.systems.MemoryError;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.Dialog;
 import org.openlca.app.util.UI;
@@ -40,12 +41,15 @@ public class ProjectEditorActions extends EditorActionBarContributor {
 	}
 
 	private void calculateReport(Project project, Report report) {
-		App.runWithProgress(M.Calculate,
-				new ReportCalculator(project, report),
-				() -> {
-					Reports.save(project, report, Database.get());
-					ReportViewer.open(report);
-				});
+		ReportCalculator calc = new ReportCalculator(project, report);
+		App.runWithProgress(M.Calculate, calc, () -> {
+			if (calc.isOutOfMemory()) {
+				MemoryError.show();
+				return;
+			}
+			Reports.save(project, report, Database.get());
+			ReportViewer.open(report);
+		});
 	}
 
 	private ProjectEditor getEditor() {
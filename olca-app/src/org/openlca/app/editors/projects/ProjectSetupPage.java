@@ -30,6 +30,7 @@ import org.openlca.app.editors.comments.CommentPaths;
 import org.openlca.app.editors.reports.ReportViewer;
 import org.openlca.app.editors.reports.Reports;
 import org.openlca.app.editors.reports.model.ReportCalculator;
+import org.openlca.app.editors.systems.MemoryError;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.util.Actions;
@@ -123,6 +124,10 @@ class ProjectSetupPage extends ModelPage<Project> {
 			ReportCalculator calc = new ReportCalculator(
 					getModel(), editor.getReport());
 			App.runWithProgress(M.Calculate, calc, () -> {
+				if (calc.isOutOfMemory()) {
+					MemoryError.show();
+					return;
+				}
 				Reports.save(getModel(), editor.getReport(), database);
 				ReportViewer.open(editor.getReport());
 			});
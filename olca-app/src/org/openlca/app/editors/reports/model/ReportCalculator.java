@@ -1,10 +1,18 @@
 package org.openlca.app.editors.reports.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Objects;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openlca.app.App;
 import org.openlca.app.db.Cache;
@@ -13,34 +21,73 @@ import org.openlca.app.editors.reports.model.ReportIndicatorResult.Contribution;
 import org.openlca.app.editors.reports.model.ReportIndicatorResult.VariantResult;
 import org.openlca.app.util.Numbers;
 import org.openlca.core.database.CurrencyDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ImpactMethodDao;
+import org.openlca.core.database.NwSetDao;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.CalculationType;
 import org.openlca.core.math.SystemCalculator;
 import org.openlca.core.matrix.NwSetTable;
 import org.openlca.core.model.Currency;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.Project;
 import org.openlca.core.model.ProjectVariant;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
+import org.openlca.core.model.descriptors.NwSetDescriptor;
 import org.openlca.core.results.ContributionItem;
+import org.openlca.core.results.ContributionResult;
 import org.openlca.core.results.ContributionSet;
-import org.openlca.core.results.ProjectResult;
 import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Calculates the results of a project report. The project variants are
+ * calculated in parallel where variants with the same calculation inputs
+ * (product system, amount, allocation method, and parameter redefinitions)
+ * are calculated only once. The number of parallel calculations is limited
+ * by the available memory as each calculation solves the technology matrix
+ * of its product system. The report data of a variant are extracted as soon
+ * as its calculation is finished so that the full results of the variants
+ * do not need to be kept in memory until all variants are calculated.
+ */
 public class ReportCalculator implements Runnable {
 
+	/** The maximum number of variants that are calculated at the same time. */
+	private static final int MAX_THREADS = 4;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 
 	private final Project project;
 	private final Report report;
 
+	/** The IDs of the processes of the report in ascending order. */
+	private long[] processIds;
+	private TLongHashSet processIdSet;
+
+	private volatile boolean outOfMemory;
+
 	public ReportCalculator(Project project, Report report) {
 		this.project = project;
 		this.report = report;
 	}
 
+	/**
+	 * Returns true if the last calculation failed because there was not
+	 * enough memory.
+	 */
+	public boolean isOutOfMemory() {
+		return outOfMemory;
+	}
+
 	@Override
 	public void run() {
+		outOfMemory = false;
 		if (project == null || report == null)
 			return;
 		report.results.clear();
@@ -48,24 +95,191 @@ public class ReportCalculator implements Runnable {
 		report.netCosts.clear();
 		if (project.impactMethodId == null)
 			return;
-		ProjectResult projectResult = calcProject(project);
-		if (projectResult == null)
+		initProcessIds();
+		List<VariantData> data = calcProject();
+		if (data == null)
 			return;
-		appendResults(projectResult);
-		appendCostResults(projectResult);
+		appendResults(data);
+		appendCostResults(data);
 		if (project.nwSetId != null)
 			appendNwFactors();
 	}
 
-	private ProjectResult calcProject(Project project) {
+	private void initProcessIds() {
+		processIdSet = new TLongHashSet();
+		for (ReportProcess process : report.processes) {
+			if (process.descriptor == null)
+				continue;
+			processIdSet.add(process.descriptor.id);
+		}
+		processIds = processIdSet.toArray();
+		Arrays.sort(processIds);
+	}
+
+	/**
+	 * Calculates the enabled variants of the project and returns their report
+	 * data in the order of the variants in the project; returns null if the
+	 * calculation failed.
+	 */
+	private List<VariantData> calcProject() {
+		Map<String, List<ProjectVariant>> groups = new LinkedHashMap<>();
+		for (ProjectVariant variant : project.variants) {
+			if (variant.isDisabled || variant.productSystem == null)
+				continue;
+			String key = key(variant);
+			List<ProjectVariant> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(key, group);
+			}
+			group.add(variant);
+		}
+		if (groups.isEmpty())
+			return null;
+		IDatabase db = Database.get();
+		ImpactMethodDescriptor method = new ImpactMethodDao(db)
+				.getDescriptor(project.impactMethodId);
+		NwSetDescriptor nwSet = project.nwSetId == null
+				? null
+				: new NwSetDao(db).getDescriptor(project.nwSetId);
+		int size = preload(groups.values());
+		ExecutorService pool = Executors.newFixedThreadPool(
+				threads(groups.size(), size));
 		try {
-			SystemCalculator calculator = new SystemCalculator(
-					Cache.getMatrixCache(), App.getSolver());
-			return calculator.calculate(project);
+			List<Future<List<VariantData>>> futures = new ArrayList<>();
+			for (List<ProjectVariant> group : groups.values()) {
+				futures.add(pool.submit(() -> calc(group, method, nwSet)));
+			}
+			Map<ProjectVariant, VariantData> results = new HashMap<>();
+			for (Future<List<VariantData>> future : futures) {
+				for (VariantData d : future.get()) {
+					results.put(d.variant, d);
+				}
+			}
+			List<VariantData> data = new ArrayList<>();
+			for (ProjectVariant variant : project.variants) {
+				VariantData d = results.get(variant);
+				if (d != null) {
+					data.add(d);
+				}
+			}
+			return data;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OutOfMemoryError) {
+				log.error("Not enough memory for the project calculation");
+				outOfMemory = true;
+			} else {
+				log.error("Calculation of project failed", e.getCause());
+			}
+			return null;
 		} catch (Exception e) {
 			log.error("Calculation of project failed", e);
 			return null;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads the processes and links of the product systems of the variants
+	 * before the calculations are started. Variants can share the same
+	 * product system and its lazy collections should not be loaded from
+	 * several threads at the same time. Returns the number of processes of
+	 * the largest system.
+	 */
+	private int preload(Collection<List<ProjectVariant>> groups) {
+		int size = 0;
+		for (List<ProjectVariant> group : groups) {
+			for (ProjectVariant variant : group) {
+				ProductSystem system = variant.productSystem;
+				size = Math.max(size, system.processes.size());
+				system.processLinks.size();
+			}
 		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of threads for the calculation of the given number
+	 * of variant groups. We assume that a calculation needs three dense
+	 * copies of the technology matrix of the given size (the matrix, its
+	 * factorization, and the intermediate results) and use at most half of
+	 * the free memory.
+	 */
+	private int threads(int groups, int size) {
+		Runtime rt = Runtime.getRuntime();
+		long free = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+		long perCalculation = Math.max(1, 3L * 8L * size * size);
+		long byMemory = free / 2 / perCalculation;
+		long threads = Math.min(byMemory, MAX_THREADS);
+		threads = Math.min(threads, rt.availableProcessors());
+		threads = Math.min(threads, groups);
+		return (int) Math.max(1, threads);
+	}
+
+	/**
+	 * Calculates the first variant of the given group and extracts the report
+	 * data for all variants of the group from this result.
+	 */
+	private List<VariantData> calc(List<ProjectVariant> group,
+			ImpactMethodDescriptor method, NwSetDescriptor nwSet) {
+		ProjectVariant variant = group.get(0);
+		log.trace("calculate project variant {}", variant.name);
+		CalculationSetup setup = new CalculationSetup(
+				CalculationType.CONTRIBUTION_ANALYSIS, variant.productSystem);
+		setup.setUnit(variant.unit);
+		setup.setFlowPropertyFactor(variant.flowPropertyFactor);
+		setup.setAmount(variant.amount);
+		setup.allocationMethod = variant.allocationMethod;
+		setup.parameterRedefs.addAll(variant.parameterRedefs);
+		setup.impactMethod = method;
+		setup.nwSet = nwSet;
+		setup.withCosts = true;
+		SystemCalculator calculator = new SystemCalculator(
+				Cache.getMatrixCache(), App.getSolver());
+		ContributionResult result = calculator.calculateContributions(setup);
+		List<VariantData> data = new ArrayList<>();
+		for (ProjectVariant v : group) {
+			data.add(extract(v, result));
+		}
+		return data;
+	}
+
+	/**
+	 * Returns a key of the calculation inputs of the given variant. Variants
+	 * with the same key have the same results.
+	 */
+	private String key(ProjectVariant v) {
+		List<String> redefs = new ArrayList<>();
+		for (ParameterRedef redef : v.parameterRedefs) {
+			String name = redef.name == null ? "" : redef.name.toLowerCase();
+			redefs.add(redef.contextId + "/" + name + "=" + redef.value);
+		}
+		Collections.sort(redefs);
+		return v.productSystem.id
+				+ ";" + v.allocationMethod
+				+ ";" + (v.unit == null ? null : v.unit.id)
+				+ ";" + (v.flowPropertyFactor == null
+						? null
+						: v.flowPropertyFactor.id)
+				+ ";" + v.amount
+				+ ";" + redefs;
+	}
+
+	private VariantData extract(ProjectVariant variant,
+			ContributionResult result) {
+		VariantData data = new VariantData();
+		data.variant = variant;
+		data.costs = result.totalCosts;
+		for (ImpactCategoryDescriptor impact : result.getImpacts()) {
+			VariantResult varResult = new VariantResult();
+			varResult.variant = variant.name;
+			varResult.totalAmount = result.getTotalImpactResult(impact);
+			appendProcessContributions(
+					result.getProcessContributions(impact), varResult);
+			data.results.put(impact.id, varResult);
+		}
+		return data;
 	}
 
 	private void appendNwFactors() {
@@ -92,34 +306,23 @@ public class ReportCalculator implements Runnable {
 		}
 	}
 
-	private void appendResults(ProjectResult result) {
-		for (ImpactCategoryDescriptor impact : result.getImpacts()) {
-			ReportIndicatorResult repResult = initReportResult(impact);
-			if (repResult == null)
-				continue; // should not add this indicator
-			report.results.add(repResult);
-			for (ProjectVariant variant : result.getVariants()) {
-				VariantResult varResult = new VariantResult();
-				repResult.variantResults.add(varResult);
-				varResult.variant = variant.name;
-				varResult.totalAmount = result.getTotalImpactResult(
-						variant, impact);
-				ContributionSet<CategorizedDescriptor> set = result
-						.getResult(variant)
-						.getProcessContributions(impact);
-				appendProcessContributions(set, varResult);
-			}
-		}
-	}
-
-	private ReportIndicatorResult initReportResult(ImpactCategoryDescriptor impact) {
+	private void appendResults(List<VariantData> data) {
 		for (ReportIndicator indicator : report.indicators) {
-			if (!indicator.displayed)
+			if (!indicator.displayed || indicator.descriptor == null)
 				continue;
-			if (Objects.equals(impact, indicator.descriptor))
-				return new ReportIndicatorResult(indicator.id);
+			ReportIndicatorResult repResult = null;
+			for (VariantData d : data) {
+				VariantResult varResult = d.results.get(
+						indicator.descriptor.id);
+				if (varResult == null)
+					continue;
+				if (repResult == null) {
+					repResult = new ReportIndicatorResult(indicator.id);
+					report.results.add(repResult);
+				}
+				repResult.variantResults.add(varResult);
+			}
 		}
-		return null;
 	}
 
 	private void appendProcessContributions(
@@ -129,19 +332,18 @@ public class ReportCalculator implements Runnable {
 		rest.rest = true;
 		rest.processId = (long) -1;
 		rest.amount = (double) 0;
-		Set<Long> ids = getContributionProcessIds();
-		Set<Long> foundIds = new TreeSet<>();
+		TLongHashSet foundIds = new TLongHashSet();
 		for (ContributionItem<CategorizedDescriptor> item : set.contributions) {
 			if (item.item == null)
 				continue;
-			if (!ids.contains(item.item.id))
+			if (!processIdSet.contains(item.item.id))
 				rest.amount = rest.amount + item.amount;
 			else {
 				foundIds.add(item.item.id);
 				addContribution(varResult, item);
 			}
 		}
-		addDefaultContributions(ids, foundIds, varResult);
+		addDefaultContributions(foundIds, varResult);
 	}
 
 	private void addContribution(VariantResult varResult,
@@ -153,24 +355,14 @@ public class ReportCalculator implements Runnable {
 		con.processId = item.item.id;
 	}
 
-	private Set<Long> getContributionProcessIds() {
-		Set<Long> ids = new TreeSet<>();
-		for (ReportProcess process : report.processes) {
-			if (process.descriptor == null)
-				continue;
-			ids.add(process.descriptor.id);
-		}
-		return ids;
-	}
-
 	/**
 	 * Add zero-contributions for processes that were not found in a variant result.
 	 */
-	private void addDefaultContributions(Set<Long> ids, Set<Long> foundIds,
+	private void addDefaultContributions(TLongHashSet foundIds,
 			VariantResult varResult) {
-		TreeSet<Long> notFound = new TreeSet<>(ids);
-		notFound.removeAll(foundIds);
-		for (long id : notFound) {
+		for (long id : processIds) {
+			if (foundIds.contains(id))
+				continue;
 			Contribution con = new Contribution();
 			varResult.contributions.add(con);
 			con.amount = (double) 0;
@@ -179,15 +371,12 @@ public class ReportCalculator implements Runnable {
 		}
 	}
 
-	private void appendCostResults(ProjectResult result) {
-		if (result == null)
-			return;
+	private void appendCostResults(List<VariantData> data) {
 		String currency = getCurrency();
-		for (ProjectVariant var : result.getVariants()) {
-			double costs = result.getResult(var).totalCosts;
-			report.netCosts.add(cost(var, costs, currency));
-			double addedValue = costs == 0 ? 0 : -costs;
-			report.addedValues.add(cost(var, addedValue, currency));
+		for (VariantData d : data) {
+			report.netCosts.add(cost(d.variant, d.costs, currency));
+			double addedValue = d.costs == 0 ? 0 : -d.costs;
+			report.addedValues.add(cost(d.variant, addedValue, currency));
 		}
 		Comparator<ReportCostResult> c = (r1, r2) -> {
 			return Strings.compare(r1.variant, r2.variant);
@@ -215,4 +404,14 @@ public class ReportCalculator implements Runnable {
 			return "?";
 		}
 	}
+
+	/** The report data of a calculated project variant. */
+	private static class VariantData {
+
+		ProjectVariant variant;
+		double costs;
+
+		/** Impact category ID -> result of the variant. */
+		final Map<Long, VariantResult> results = new HashMap<>();
+	}
 }
@@ -8,6 +8,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.dialogs.IDialogConstants;
@@ -136,6 +139,9 @@ public class CalculationWizard extends Wizard {
 			if (calculation.outOfMemory)
 				MemoryError.show();
 			return !calculation.outOfMemory;
+		} catch (InterruptedException e) {
+			log.trace("calculation canceled");
+			return false;
 		} catch (Exception e) {
 			log.error("Calculation failed", e);
 			return false;
@@ -196,22 +202,27 @@ public class CalculationWizard extends Wizard {
 		@Override
 		public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 			outOfMemory = false;
-			monitor.beginTask(M.RunCalculation, IProgressMonitor.UNKNOWN);
+			// the calculations have two stages: solving the system and the
+			// post-processing; a simulation is calculated in its editor
+			int stages = setup.type == CalculationType.MONTE_CARLO_SIMULATION
+					? IProgressMonitor.UNKNOWN
+					: 2;
+			monitor.beginTask(M.RunCalculation, stages);
 			int size = productSystem.processes.size();
 			log.trace("calculate a {} x {} system", size, size);
 			try {
 				switch (setup.type) {
 				case UPSTREAM_ANALYSIS:
-					analyse();
+					analyse(monitor);
 					break;
 				case MONTE_CARLO_SIMULATION:
 					SimulationEditor.open(setup, Cache.getMatrixCache());
 					break;
 				case CONTRIBUTION_ANALYSIS:
-					solve();
+					solve(monitor);
 					break;
 				case REGIONALIZED_CALCULATION:
-					calcRegionalized();
+					calcRegionalized(monitor);
 					break;
 				default:
 					break;
@@ -222,45 +233,94 @@ public class CalculationWizard extends Wizard {
 			monitor.done();
 		}
 
-		private void analyse() {
+		private void analyse(IProgressMonitor monitor) throws InterruptedException {
 			log.trace("run analysis");
+			monitor.subTask("Build and solve matrices");
 			SystemCalculator calculator = new SystemCalculator(Cache.getMatrixCache(), App.getSolver());
 			FullResult result = calculator.calculateFull(setup);
 			log.trace("calculation done, open editor");
-			setInventory(result);
-			DQResult dqResult = DQResult.calculate(Database.get(), result, dqSetup);
+			nextStage(monitor);
+			DQResult dqResult = postProcess(result,
+					() -> DQResult.calculate(Database.get(), result, dqSetup),
+					monitor);
 			ResultEditorInput input = getEditorInput(result, setup, null, dqResult);
 			Editors.open(input, AnalyzeEditor.ID);
 		}
 
-		private void solve() {
+		private void solve(IProgressMonitor monitor) throws InterruptedException {
 			log.trace("run quick calculation");
+			monitor.subTask("Build and solve matrices");
 			SystemCalculator calculator = new SystemCalculator(Cache.getMatrixCache(), App.getSolver());
 			ContributionResult result = calculator.calculateContributions(setup);
 			log.trace("calculation done, open editor");
-			setInventory(result);
-			DQResult dqResult = DQResult.calculate(Database.get(), result, dqSetup);
+			nextStage(monitor);
+			DQResult dqResult = postProcess(result,
+					() -> DQResult.calculate(Database.get(), result, dqSetup),
+					monitor);
 			ResultEditorInput input = getEditorInput(result, setup, null, dqResult);
 			Editors.open(input, QuickResultEditor.ID);
 		}
 
-		private void calcRegionalized() {
+		private void calcRegionalized(IProgressMonitor monitor) throws InterruptedException {
 			log.trace("calculate regionalized result");
+			monitor.subTask("Build and solve matrices");
 			RegionalizedCalculator calc = new RegionalizedCalculator(setup, App.getSolver());
 			RegionalizedResult result = calc.calculate(Database.get(), Cache.getMatrixCache());
 			if (result == null) {
 				Info.showBox(M.NoRegionalizedInformation_Message);
 				return;
 			}
-			setInventory(result.result);
-			DQResult dqResult = DQResult.calculate(Database.get(), result.result, dqSetup);
+			nextStage(monitor);
+			DQResult dqResult = postProcess(result.result,
+					() -> DQResult.calculate(Database.get(), result.result, dqSetup),
+					monitor);
 			ResultEditorInput input = getEditorInput(result, setup, result.parameterSet, dqResult);
 			Editors.open(input, RegionalizedResultEditor.ID);
 		}
 
+		/**
+		 * Runs the data quality aggregation in a separate thread while the
+		 * inventory result is stored in the product system.
+		 */
+		private DQResult postProcess(SimpleResult result,
+				Supplier<DQResult> dqCalculation, IProgressMonitor monitor)
+				throws InterruptedException {
+			monitor.subTask("Calculate data quality results");
+			CompletableFuture<DQResult> dq = CompletableFuture
+					.supplyAsync(dqCalculation);
+			if (storeInventoryResult) {
+				// the inventory is written to the product system, so we do not
+				// start this when the calculation was already canceled
+				if (monitor.isCanceled())
+					throw new InterruptedException("calculation canceled");
+				monitor.subTask("Store inventory result");
+				setInventory(result);
+			}
+			try {
+				DQResult dqResult = dq.get();
+				nextStage(monitor);
+				return dqResult;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof OutOfMemoryError)
+					throw (OutOfMemoryError) cause;
+				log.error("data quality calculation failed", cause);
+				nextStage(monitor);
+				return null;
+			}
+		}
+
+		/**
+		 * Marks the current stage as done and throws an interrupted exception
+		 * if the user canceled the calculation.
+		 */
+		private void nextStage(IProgressMonitor monitor) throws InterruptedException {
+			monitor.worked(1);
+			if (monitor.isCanceled())
+				throw new InterruptedException("calculation canceled");
+		}
+
 		private void setInventory(SimpleResult result) {
-			if (!storeInventoryResult)
-				return;
 			productSystem.inventory.clear();
 			Map<Long, Flow> flows = new HashMap<>();
 			Set<Long> ids = new HashSet<>();
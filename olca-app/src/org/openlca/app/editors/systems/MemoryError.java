@@ -14,7 +14,7 @@ import org.openlca.app.M;
 import org.openlca.app.util.Controls;
 import org.openlca.app.util.UI;
 
-class MemoryError {
+public class MemoryError {
 
 	public static void show() {
 		Dialog dialog = new Dialog();
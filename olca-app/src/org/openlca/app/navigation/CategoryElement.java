@@ -3,11 +3,8 @@ package org.openlca.app.navigation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
-import org.openlca.app.db.Database;
-import org.openlca.core.database.CategorizedEntityDao;
-import org.openlca.core.database.Daos;
+import org.openlca.app.db.Cache;
 import org.openlca.core.model.Category;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.slf4j.Logger;
@@ -42,12 +39,11 @@ public class CategoryElement extends NavigationElement<Category> {
 	private void addModelElements(Category category,
 			List<INavigationElement<?>> list) {
 		try {
-			CategorizedEntityDao<?, ?> dao = Daos.categorized(
-					Database.get(), category.modelType);
-			if (dao == null)
+			NavigationIndex index = Cache.getNavigationIndex();
+			if (index == null)
 				return;
-			Optional<Category> optional = Optional.ofNullable(category);
-			for (CategorizedDescriptor d : dao.getDescriptors(optional))
+			for (CategorizedDescriptor d : index.get(
+					category.modelType, category.id))
 				list.add(new ModelElement(this, d));
 		} catch (Exception e) {
 			log.error("failed to get model elements: " + category, e);
@@ -1,11 +1,17 @@
 package org.openlca.app.navigation;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.widgets.TreeItem;
+import org.openlca.app.db.Cache;
 import org.openlca.app.util.Labels;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
 /**
  * A class for filtering model elements from an navigation tree via a text
@@ -15,9 +21,16 @@ public class ModelTextFilter extends ViewerFilter {
 
 	private final Text filterText;
 
+	/**
+	 * Caches the matching state of the categories for the current filter
+	 * text. This cache is cleared when the filter text changes.
+	 */
+	private final Map<Long, Boolean> categoryMatches = new HashMap<>();
+
 	public ModelTextFilter(Text text, TreeViewer viewer) {
 		this.filterText = text;
 		text.addModifyListener(e -> {
+			categoryMatches.clear();
 			viewer.refresh();
 			expand(viewer);
 		});
@@ -51,9 +64,48 @@ public class ModelTextFilter extends ViewerFilter {
 					.toLowerCase();
 			return feed.contains(text);
 		}
+		if (element instanceof CategoryElement) {
+			Category category = ((CategoryElement) element).getContent();
+			return select(category, text);
+		}
 		for (INavigationElement<?> child : element.getChildren())
 			if (select(child, text))
 				return true;
 		return false;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Checks if the given category or one of its sub-categories contains a
+	 * model that matches the filter text. The models are taken from the
+	 * navigation index so that no child elements need to be created.
+	 */
+	private boolean select(Category category, String text) {
+		if (category == null)
+			return false;
+		Boolean cached = categoryMatches.get(category.id);
+		if (cached != null)
+			return cached;
+		boolean match = false;
+		NavigationIndex index = Cache.getNavigationIndex();
+		if (index != null) {
+			for (CategorizedDescriptor d : index.get(
+					category.modelType, category.id)) {
+				String feed = Labels.getDisplayName(d).toLowerCase();
+				if (feed.contains(text)) {
+					match = true;
+					break;
+				}
+			}
+		}
+		if (!match) {
+			for (Category child : category.childCategories) {
+				if (select(child, text)) {
+					match = true;
+					break;
+				}
+			}
+		}
+		categoryMatches.put(category.id, match);
+		return match;
+	}
+}
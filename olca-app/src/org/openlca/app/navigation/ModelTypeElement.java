@@ -2,12 +2,10 @@ package org.openlca.app.navigation;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
+import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
-import org.openlca.core.database.CategorizedEntityDao;
 import org.openlca.core.database.CategoryDao;
-import org.openlca.core.database.Daos;
 import org.openlca.core.model.Category;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
@@ -48,11 +46,10 @@ public class ModelTypeElement extends NavigationElement<ModelType> {
 	private void addModelElements(ModelType type, List<INavigationElement<?>> elements) {
 		try {
 			log.trace("get model elements without category for {}", type);
-			CategorizedEntityDao<?, ?> entityDao = Daos.categorized(Database.get(), type);
-			if (entityDao == null)
+			NavigationIndex index = Cache.getNavigationIndex();
+			if (index == null)
 				return;
-			Optional<Category> nil = Optional.empty();
-			for (CategorizedDescriptor descriptor : entityDao.getDescriptors(nil))
+			for (CategorizedDescriptor descriptor : index.get(type, null))
 				elements.add(new ModelElement(this, descriptor));
 		} catch (Exception e) {
 			log.error("Failed to add model elements: " + type, e);
@@ -0,0 +1,166 @@
+package org.openlca.app.navigation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openlca.core.database.CategorizedEntityDao;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Contains the descriptors of the models in the navigation grouped by their
+ * categories. The descriptors of a model type are loaded with a single query
+ * when the first element of that type is expanded. After this, the index is
+ * updated from the change events of the database so that expanding and
+ * filtering categories does not need further queries.
+ */
+public class NavigationIndex {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final Map<ModelType, TypeIndex> indices = new EnumMap<>(
+			ModelType.class);
+
+	public NavigationIndex(IDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Returns the descriptors of the given type that are directly located in
+	 * the category with the given ID. If the category ID is null, the
+	 * descriptors without category are returned.
+	 */
+	public synchronized List<CategorizedDescriptor> get(ModelType type,
+			Long categoryId) {
+		TypeIndex index = index(type);
+		if (index == null)
+			return Collections.emptyList();
+		List<CategorizedDescriptor> list = index.content.get(categoryId);
+		if (list == null)
+			return Collections.emptyList();
+		return new ArrayList<>(list);
+	}
+
+	public synchronized void inserted(BaseDescriptor d) {
+		TypeIndex index = loaded(d);
+		if (index == null)
+			return;
+		index.put((CategorizedDescriptor) d);
+	}
+
+	public synchronized void updated(BaseDescriptor d) {
+		TypeIndex index = loaded(d);
+		if (index == null)
+			return;
+		index.remove(d.id);
+		index.put((CategorizedDescriptor) d);
+	}
+
+	public synchronized void deleted(BaseDescriptor d) {
+		TypeIndex index = loaded(d);
+		if (index == null)
+			return;
+		index.remove(d.id);
+	}
+
+	public synchronized void clear() {
+		indices.clear();
+	}
+
+	/**
+	 * Returns the already loaded index for the type of the given descriptor.
+	 * If the descriptor is not a categorized descriptor, the index of the
+	 * respective type is dropped to be on the save side. This is also done
+	 * for parameters because only global parameters are in the navigation
+	 * and we cannot see the scope of a parameter from its descriptor.
+	 */
+	private TypeIndex loaded(BaseDescriptor d) {
+		if (d == null)
+			return null;
+		if (d.type == null) {
+			indices.clear();
+			return null;
+		}
+		if (!(d instanceof CategorizedDescriptor)
+				|| d.type == ModelType.PARAMETER) {
+			indices.remove(d.type);
+			return null;
+		}
+		return indices.get(d.type);
+	}
+
+	private TypeIndex index(ModelType type) {
+		if (type == null)
+			return null;
+		TypeIndex index = indices.get(type);
+		if (index != null)
+			return index;
+		try {
+			List<? extends CategorizedDescriptor> descriptors = descriptors(type);
+			if (descriptors == null)
+				return null;
+			index = new TypeIndex();
+			for (CategorizedDescriptor d : descriptors) {
+				index.put(d);
+			}
+			indices.put(type, index);
+			log.trace("indexed {} descriptors of type {}",
+					index.categories.size(), type);
+			return index;
+		} catch (Exception e) {
+			log.error("failed to load descriptors of type " + type, e);
+			return null;
+		}
+	}
+
+	private List<? extends CategorizedDescriptor> descriptors(ModelType type) {
+		if (type == ModelType.PARAMETER)
+			return new ParameterDao(database).getGlobalDescriptors();
+		CategorizedEntityDao<?, ?> dao = Daos.categorized(database, type);
+		if (dao == null)
+			return null;
+		return dao.getDescriptors();
+	}
+
+	private static class TypeIndex {
+
+		/** Maps the category IDs to the descriptors in these categories. */
+		final Map<Long, List<CategorizedDescriptor>> content = new HashMap<>();
+
+		/** Maps the descriptor IDs to the IDs of their categories. */
+		final Map<Long, Long> categories = new HashMap<>();
+
+		void put(CategorizedDescriptor d) {
+			List<CategorizedDescriptor> list = content.get(d.category);
+			if (list == null) {
+				list = new ArrayList<>();
+				content.put(d.category, list);
+			}
+			list.add(d);
+			categories.put(d.id, d.category);
+		}
+
+		void remove(long id) {
+			if (!categories.containsKey(id))
+				return;
+			Long category = categories.remove(id);
+			List<CategorizedDescriptor> list = content.get(category);
+			if (list == null)
+				return;
+			list.removeIf(d -> d.id == id);
+			if (list.isEmpty()) {
+				content.remove(category);
+			}
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.navigator.CommonNavigator;
 import org.eclipse.ui.navigator.CommonViewer;
 import org.openlca.app.App;
+import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
 import org.openlca.app.db.IDatabaseConfiguration;
 import org.openlca.app.navigation.actions.db.DbActivateAction;
@@ -97,6 +98,9 @@ public class Navigator extends CommonNavigator {
 		if (viewer == null || root == null)
 			return;
 		Object[] oldExpansion = viewer.getExpandedElements();
+		NavigationIndex index = Cache.getNavigationIndex();
+		if (index != null)
+			index.clear();
 		root.update();
 		viewer.refresh();
 		setRefreshedExpansion(viewer, oldExpansion);
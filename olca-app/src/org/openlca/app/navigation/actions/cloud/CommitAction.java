@@ -16,6 +16,7 @@ import org.openlca.app.M;
 import org.openlca.app.cloud.index.Diff;
 import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.cloud.index.DiffType;
+import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.cloud.ui.CommitDialog;
 import org.openlca.app.cloud.ui.ReferencesResultDialog;
 import org.openlca.app.cloud.ui.commits.HistoryView;
@@ -54,6 +55,8 @@ public class CommitAction extends Action implements INavigationAction {
 
 	@Override
 	public void run() {
+		if (!Reindexing.ensureComplete())
+			return;
 		Runner runner = new Runner();
 		runner.run();
 		if (!runner.upToDate && runner.error == null)
@@ -19,6 +19,7 @@ import org.openlca.app.cloud.CloudUtil;
 import org.openlca.app.cloud.JsonLoader;
 import org.openlca.app.cloud.index.Diff;
 import org.openlca.app.cloud.index.DiffIndex;
+import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.cloud.ui.DiffDialog;
 import org.openlca.app.cloud.ui.FetchNotifierMonitor;
 import org.openlca.app.cloud.ui.commits.CommitEntryDialog;
@@ -62,6 +63,8 @@ public class FetchAction extends Action implements INavigationAction {
 
 	@Override
 	public void run() {
+		if (!Reindexing.ensureComplete())
+			return;
 		Runner runner = new Runner();
 		runner.run();
 		if (runner.error != null) {
@@ -9,6 +9,7 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
 import org.openlca.app.M;
+import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.cloud.ui.commits.SelectCommitDialog;
 import org.openlca.app.cloud.ui.diff.SyncView;
 import org.openlca.app.db.Database;
@@ -33,6 +34,8 @@ public class OpenSyncViewAction extends Action implements INavigationAction {
 
 	@Override
 	public void run() {
+		if (!Reindexing.ensureComplete())
+			return;
 		String commitId = null;
 		if (selectCommit) {
 			SelectCommitDialog dialog = new SelectCommitDialog();
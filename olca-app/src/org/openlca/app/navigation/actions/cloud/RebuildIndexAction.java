@@ -1,18 +1,22 @@
 package org.openlca.app.navigation.actions.cloud;
 
-import org.openlca.app.M;
-
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 import org.eclipse.jface.action.Action;
-import org.openlca.app.App;
+import org.eclipse.ui.PlatformUI;
+import org.openlca.app.M;
+import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.db.Database;
 import org.openlca.app.navigation.DatabaseElement;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.navigation.Navigator;
 import org.openlca.app.navigation.actions.INavigationAction;
+import org.openlca.app.util.Warning;
 import org.openlca.cloud.api.RepositoryClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RebuildIndexAction extends Action implements INavigationAction {
 
@@ -25,7 +29,17 @@ public class RebuildIndexAction extends Action implements INavigationAction {
 
 	@Override
 	public void run() {
-		App.runWithProgress(M.RebuildingIndex, Reindexing::execute);
+		try {
+			PlatformUI.getWorkbench().getProgressService().run(true, true,
+					monitor -> Reindexing.execute(monitor));
+		} catch (InvocationTargetException | InterruptedException e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("Failed to rebuild the index", e);
+		}
+		DiffIndex index = Database.getDiffIndex();
+		if (index != null && !index.isComplete()) {
+			Warning.showBox(M.IndexRebuildIncomplete);
+		}
 		Navigator.refresh(Navigator.getNavigationRoot());
 	}
 
@@ -1,7 +1,9 @@
 package org.openlca.app.navigation.actions.cloud;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -21,15 +23,22 @@ import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
+/**
+ * Searches the changed data sets that are referenced by the data sets that
+ * should be committed (and the changed data sets that use new or deleted data
+ * sets of the selection). The search is a traversal of the dependency graph
+ * that only follows changed data sets: unchanged data sets are already in the
+ * repository with their references. The references of the data sets are
+ * cached in the diff index so that they are only searched once per change.
+ */
 class ReferenceSearcher {
 
-	private Set<Long> allChanged = new HashSet<>();
-	private Map<Long, String> idToRefId = new HashMap<>();
-	private Set<DiffResult> results = new HashSet<>();
-	private IDatabase database;
-	private DiffIndex index;
-	private Set<Long> alreadySearchedReferences = new HashSet<>();
-	private Set<Long> alreadySearchedUsages = new HashSet<>();
+	private final IDatabase database;
+	private final DiffIndex index;
+
+	/** The keys of the selected and already found data sets. */
+	private final Set<String> visited = new HashSet<>();
+	private final List<DiffResult> results = new ArrayList<>();
 
 	ReferenceSearcher(IDatabase database, DiffIndex index) {
 		this.database = database;
@@ -37,148 +46,155 @@ class ReferenceSearcher {
 	}
 
 	List<DiffResult> run(List<DiffResult> toCheck) {
-		allChanged.clear();
+		Deque<Diff> queue = new ArrayDeque<>();
 		int zeroCount = 0;
-		for (DiffResult result : toCheck)
+		for (DiffResult result : toCheck) {
+			visited.add(result.local.getDataset().refId);
 			if (result.local.localId != 0)
-				allChanged.add(result.local.localId);
+				queue.add(result.local);
 			else
 				zeroCount++;
-		if (allChanged.size() + zeroCount == index.getChanged().size())
+		}
+		int changed = queue.size() + zeroCount;
+		if (changed == index.getChangedCount())
 			return Collections.emptyList();
-		Map<ModelType, Set<Long>> typeToIds = prepareFromResults(toCheck);
-		search(typeToIds);
-		return new ArrayList<>(results);
-	}
-
-	private void search(Map<ModelType, Set<Long>> toCheck) {
-		Set<CategorizedDescriptor> allFound = new HashSet<>();
-		for (ModelType type : toCheck.keySet()) {
-			Set<Long> values = toCheck.get(type);
-			Set<CategorizedDescriptor> refs = search(type, values);
-			allFound.addAll(refs);
-			List<Diff> diffs = getChanged(refs);
-			for (Diff diff : diffs) {
-				DiffResult diffResult = new DiffResult(diff);
-				if (diffResult.local.localId == 0)
+		while (!queue.isEmpty()) {
+			// process the next level of the graph in batches per type
+			List<Diff> level = new ArrayList<>(queue);
+			queue.clear();
+			for (String refId : getNeighbors(level)) {
+				if (!visited.add(refId))
+					continue;
+				Diff diff = index.get(refId);
+				if (diff == null || !diff.hasChanged() || diff.localId == 0)
 					continue;
-				diffResult.ignoreRemote = true;
-				allChanged.add(diffResult.local.localId);
-				results.add(diffResult);
+				DiffResult result = new DiffResult(diff);
+				result.ignoreRemote = true;
+				results.add(result);
+				queue.add(diff);
+				changed++;
 			}
+			if (changed >= index.getChangedCount())
+				break;
 		}
-		if (allFound.isEmpty() || allChanged.size() == index.getChanged().size())
-			return;
-		Map<ModelType, Set<Long>> next = prepareFromDescriptors(allFound);
-		search(next);
-	}
-
-	private Set<CategorizedDescriptor> search(ModelType type, Set<Long> toCheck) {
-		Set<CategorizedDescriptor> results = searchReferences(type, toCheck);
-		results.addAll(searchUsage(type, toCheck));
 		return results;
 	}
 
-	private Set<CategorizedDescriptor> searchReferences(ModelType type, Set<Long> toCheck) {
-		Set<CategorizedDescriptor> results = new HashSet<>();
-		for (Long id : new HashSet<>(toCheck)) {
-			if (alreadySearchedReferences.contains(id)) {
-				toCheck.remove(id);
-				continue;
+	/**
+	 * Returns the keys of the data sets that are referenced by the given data
+	 * sets and of the changed data sets that use new or deleted data sets.
+	 */
+	private Set<String> getNeighbors(List<Diff> diffs) {
+		Set<String> neighbors = new HashSet<>();
+		Map<ModelType, Map<Long, String>> unknown = new HashMap<>();
+		Map<ModelType, Set<Long>> usageCheck = new HashMap<>();
+		for (Diff diff : diffs) {
+			String refId = diff.getDataset().refId;
+			ModelType type = diff.getDataset().type;
+			Set<String> refs = index.getReferences(refId);
+			if (refs != null) {
+				neighbors.addAll(refs);
+			} else {
+				mapOf(unknown, type).put(diff.localId, refId);
+			}
+			if (diff.type != DiffType.CHANGED) {
+				setOf(usageCheck, type).add(diff.localId);
 			}
-			alreadySearchedReferences.add(id);
 		}
-		if (toCheck.isEmpty())
-			return Collections.emptySet();
-		IReferenceSearch<?> refSearch = IReferenceSearch.FACTORY.createFor(type, database, true);
-		results.addAll(loadDescriptors(refSearch.findReferences(toCheck)));
-		return results;
+		for (ModelType type : unknown.keySet()) {
+			neighbors.addAll(searchReferences(type, unknown.get(type)));
+		}
+		for (ModelType type : usageCheck.keySet()) {
+			neighbors.addAll(searchUsage(type, usageCheck.get(type)));
+		}
+		return neighbors;
 	}
 
-	private Set<CategorizedDescriptor> searchUsage(ModelType type, Set<Long> toCheck) {
-		for (Long id : new HashSet<>(toCheck)) {
-			if (alreadySearchedUsages.contains(id)) {
-				toCheck.remove(id);
+	/**
+	 * Searches the references of the data sets with the given IDs and keys and
+	 * stores them in the index.
+	 */
+	private Set<String> searchReferences(ModelType type, Map<Long, String> ids) {
+		IReferenceSearch<?> refSearch = IReferenceSearch.FACTORY.createFor(
+				type, database, true);
+		List<Reference> references = refSearch.findReferences(
+				new HashSet<>(ids.keySet()));
+		Map<Class<? extends AbstractEntity>, Map<Long, String>> refIds = loadRefIds(references);
+		Map<Long, Set<String>> byOwner = new HashMap<>();
+		for (Long id : ids.keySet()) {
+			byOwner.put(id, new HashSet<>());
+		}
+		for (Reference reference : references) {
+			Map<Long, String> forType = refIds.get(reference.getType());
+			if (forType == null)
 				continue;
-			}
-			alreadySearchedUsages.add(id);
-			Diff diff = index.get(idToRefId.get(id));
-			if (diff == null || diff.type != DiffType.CHANGED)
+			String refId = forType.get(reference.id);
+			Set<String> refs = byOwner.get(reference.ownerId);
+			if (refId == null || refs == null)
 				continue;
-			toCheck.remove(id);
+			refs.add(refId);
 		}
-		Set<CategorizedDescriptor> results = new HashSet<>();
-		if (toCheck.isEmpty())
-			return results;
+		Set<String> all = new HashSet<>();
+		for (Long id : byOwner.keySet()) {
+			Set<String> refs = byOwner.get(id);
+			index.putReferences(ids.get(id), refs);
+			all.addAll(refs);
+		}
+		return all;
+	}
+
+	private Set<String> searchUsage(ModelType type, Set<Long> ids) {
+		Set<String> refIds = new HashSet<>();
 		IUseSearch<?> useSearch = IUseSearch.FACTORY.createFor(type, database);
-		List<CategorizedDescriptor> usedIn = useSearch.findUses(toCheck);
+		List<CategorizedDescriptor> usedIn = useSearch.findUses(ids);
 		for (CategorizedDescriptor descriptor : usedIn) {
 			Diff diff = index.get(descriptor.refId);
 			if (diff == null || diff.type == DiffType.NO_DIFF || diff.type == DiffType.NEW)
 				continue;
-			results.add(descriptor);
+			refIds.add(descriptor.refId);
 		}
-		return results;
+		return refIds;
 	}
 
-	private Set<CategorizedDescriptor> loadDescriptors(List<Reference> references) {
-		Map<Class<? extends AbstractEntity>, Set<Long>> map = new HashMap<>();
+	/**
+	 * Loads the reference IDs of the categorized data sets of the given
+	 * references: model class -> (ID -> reference ID).
+	 */
+	private Map<Class<? extends AbstractEntity>, Map<Long, String>> loadRefIds(
+			List<Reference> references) {
+		Map<Class<? extends AbstractEntity>, Set<Long>> ids = new HashMap<>();
 		for (Reference reference : references) {
-			Set<Long> set = map.get(reference.getType());
+			Set<Long> set = ids.get(reference.getType());
 			if (set == null)
-				map.put(reference.getType(), set = new HashSet<>());
+				ids.put(reference.getType(), set = new HashSet<>());
 			set.add(reference.id);
 		}
-		Set<CategorizedDescriptor> descriptors = new HashSet<>();
-		for (Class<? extends AbstractEntity> clazz : map.keySet()) {
+		Map<Class<? extends AbstractEntity>, Map<Long, String>> refIds = new HashMap<>();
+		for (Class<? extends AbstractEntity> clazz : ids.keySet()) {
 			ModelType type = ModelType.forModelClass(clazz);
-			if (type != null && type.isCategorized()) {
-				descriptors.addAll(Daos.categorized(database, type).getDescriptors(map.get(clazz)));
-			}
-		}
-		for (CategorizedDescriptor descriptor : descriptors)
-			idToRefId.put(descriptor.id, descriptor.refId);
-		return descriptors;
-	}
-
-	private List<Diff> getChanged(Set<CategorizedDescriptor> refs) {
-		List<Diff> relevant = new ArrayList<>();
-		for (CategorizedDescriptor d : refs) {
-			if (allChanged.contains(d.id))
+			if (type == null || !type.isCategorized())
 				continue;
-			Diff diff = index.get(d.refId);
-			if (diff == null || !diff.hasChanged())
-				continue;
-			relevant.add(diff);
-		}
-		return relevant;
-	}
-
-	private Map<ModelType, Set<Long>> prepareFromResults(List<DiffResult> toCheck) {
-		Map<ModelType, Set<Long>> typeToIds = new HashMap<>();
-		for (DiffResult result : toCheck) {
-			if (result.local.localId == 0)
-				continue;
-			ModelType type = result.local.getDataset().type;
-			addId(typeToIds, type, result.local.localId);
-			idToRefId.put(result.local.localId, result.local.getDataset().refId);
+			Map<Long, String> forType = new HashMap<>();
+			for (CategorizedDescriptor d : Daos.categorized(database, type)
+					.getDescriptors(ids.get(clazz))) {
+				forType.put(d.id, d.refId);
+			}
+			refIds.put(clazz, forType);
 		}
-		return typeToIds;
+		return refIds;
 	}
 
-	private Map<ModelType, Set<Long>> prepareFromDescriptors(Set<CategorizedDescriptor> toCheck) {
-		Map<ModelType, Set<Long>> typeToIds = new HashMap<>();
-		for (CategorizedDescriptor descriptor : toCheck) {
-			addId(typeToIds, descriptor.type, descriptor.id);
-			idToRefId.put(descriptor.id, descriptor.refId);
-		}
-		return typeToIds;
+	private <K, V> Map<K, V> mapOf(Map<ModelType, Map<K, V>> map, ModelType type) {
+		Map<K, V> forType = map.get(type);
+		if (forType == null)
+			map.put(type, forType = new HashMap<>());
+		return forType;
 	}
 
-	private void addId(Map<ModelType, Set<Long>> map, ModelType type, long id) {
-		Set<Long> ids = map.get(type);
-		if (ids == null)
-			map.put(type, ids = new HashSet<>());
-		ids.add(id);
+	private <T> Set<T> setOf(Map<ModelType, Set<T>> map, ModelType type) {
+		Set<T> forType = map.get(type);
+		if (forType == null)
+			map.put(type, forType = new HashSet<>());
+		return forType;
 	}
 }
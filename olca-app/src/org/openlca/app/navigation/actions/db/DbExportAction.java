@@ -17,6 +17,7 @@ import org.openlca.app.cloud.ui.commits.HistoryView;
 import org.openlca.app.components.FileChooser;
 import org.openlca.app.db.Database;
 import org.openlca.app.db.DatabaseDir;
+import org.openlca.app.db.DerbyBackup;
 import org.openlca.app.db.DerbyConfiguration;
 import org.openlca.app.db.IDatabaseConfiguration;
 import org.openlca.app.db.MySQLConfiguration;
@@ -84,6 +85,22 @@ public class DbExportAction extends Action implements INavigationAction {
 				return;
 			}
 		}
+		if (active && config instanceof DerbyConfiguration) {
+			// an open Derby database is backed up online; we only need to
+			// make sure that the changes of open editors are saved
+			if (!Editors.getActivePage().saveAllEditors(true))
+				return;
+			log.trace("run online backup to file {}", zip);
+			DerbyBackup backup = new DerbyBackup(Database.get(), zip);
+			App.runWithProgress(M.ExportDatabase, backup);
+			if (!backup.doneWithSuccess()) {
+				org.openlca.app.util.Error.showBox(M.ExportDatabase,
+						M.DatabaseBackupFailed);
+				return;
+			}
+			updateUI(zip, false);
+			return;
+		}
 		if (active)
 			if (!Editors.closeAll())
 				return;
@@ -0,0 +1,140 @@
+package org.openlca.app.rcp.html;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/**
+ * A local HTTP server from which the HTML map views load their data. Instead
+ * of pushing large data sets through the script interface of the browser, a
+ * view registers a data layer here and passes only the URL of this layer to
+ * the page. The page then requests the data for its current viewport:
+ *
+ * <pre>
+ * http://127.0.0.1:{port}/layers/{id}?bbox={minLon},{minLat},{maxLon},{maxLat}&zoom={zoom}
+ * </pre>
+ *
+ * The server only listens on the loopback interface and is started with the
+ * first call of {@link #get()}.
+ */
+public class MapDataServer extends NanoHTTPD {
+
+	private static MapDataServer instance;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final Map<String, Layer> layers = new ConcurrentHashMap<>();
+
+	/** A layer provides the data for a map view. */
+	@FunctionalInterface
+	public interface Layer {
+
+		/**
+		 * Returns the data of the layer as JSON string. The bounding box
+		 * contains the coordinates minLon, minLat, maxLon, maxLat in WGS 84;
+		 * it is null if the data of the whole layer are requested.
+		 */
+		String getData(double[] bbox, int zoom);
+	}
+
+	private MapDataServer() {
+		super("127.0.0.1", 0);
+	}
+
+	/**
+	 * Returns the running server instance or null if the server could not be
+	 * started.
+	 */
+	public static synchronized MapDataServer get() {
+		if (instance != null)
+			return instance;
+		MapDataServer server = new MapDataServer();
+		try {
+			server.start(NanoHTTPD.SOCKET_READ_TIMEOUT, true);
+			instance = server;
+			return instance;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(MapDataServer.class);
+			log.error("failed to start map data server", e);
+			return null;
+		}
+	}
+
+	/** Registers the given layer and returns its ID. */
+	public String register(Layer layer) {
+		String id = UUID.randomUUID().toString();
+		layers.put(id, layer);
+		return id;
+	}
+
+	public void remove(String id) {
+		if (id != null) {
+			layers.remove(id);
+		}
+	}
+
+	/** Returns the URL of the layer with the given ID. */
+	public String getUrl(String id) {
+		return "http://127.0.0.1:" + getListeningPort() + "/layers/" + id;
+	}
+
+	@Override
+	public Response serve(IHTTPSession session) {
+		String uri = session.getUri();
+		String prefix = "/layers/";
+		Layer layer = uri != null && uri.startsWith(prefix)
+				? layers.get(uri.substring(prefix.length()))
+				: null;
+		if (layer == null)
+			return cors(newFixedLengthResponse(Response.Status.NOT_FOUND,
+					MIME_PLAINTEXT, "unknown layer: " + uri));
+		Map<String, List<String>> params = session.getParameters();
+		try {
+			double[] bbox = bbox(first(params, "bbox"));
+			String zoomParam = first(params, "zoom");
+			int zoom = zoomParam == null
+					? 0
+					: (int) Math.round(Double.parseDouble(zoomParam));
+			String json = layer.getData(bbox, zoom);
+			return cors(newFixedLengthResponse(Response.Status.OK,
+					"application/json", json));
+		} catch (Exception e) {
+			log.error("failed to get data of layer " + uri, e);
+			return cors(newFixedLengthResponse(
+					Response.Status.INTERNAL_ERROR, MIME_PLAINTEXT,
+					e.getMessage()));
+		}
+	}
+
+	/** The pages are loaded from files so we need to allow any origin. */
+	private Response cors(Response response) {
+		response.addHeader("Access-Control-Allow-Origin", "*");
+		response.addHeader("Cache-Control", "no-cache");
+		return response;
+	}
+
+	private String first(Map<String, List<String>> params, String key) {
+		List<String> values = params.get(key);
+		if (values == null || values.isEmpty())
+			return null;
+		return values.get(0);
+	}
+
+	private double[] bbox(String param) {
+		if (param == null)
+			return null;
+		String[] parts = param.split(",");
+		if (parts.length != 4)
+			return null;
+		double[] bbox = new double[4];
+		for (int i = 0; i < 4; i++) {
+			bbox[i] = Double.parseDouble(parts[i].trim());
+		}
+		return bbox;
+	}
+}
@@ -32,13 +32,13 @@ import org.eclipse.gef.ui.parts.GraphicalEditor;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.swt.SWT;
 import org.openlca.app.App;
+import org.openlca.app.editors.graphical.search.ProcessLinkSearchMap;
 import org.openlca.app.results.analysis.sankey.actions.SankeyMenu;
 import org.openlca.app.results.analysis.sankey.model.Link;
 import org.openlca.app.results.analysis.sankey.model.ProcessNode;
 import org.openlca.app.results.analysis.sankey.model.ProductSystemNode;
 import org.openlca.core.math.CalculationSetup;
 import org.openlca.core.math.data_quality.DQResult;
-import org.openlca.core.matrix.ProcessLinkSearchMap;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
@@ -66,7 +66,7 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		this.result = result;
 		productSystem = setup.productSystem;
 		linkSearchMap = new ProcessLinkSearchMap(productSystem.processLinks);
-		sankeyResult = new SankeyResult(productSystem, result);
+		sankeyResult = new SankeyResult(result);
 		if (productSystem != null) {
 			setPartName(productSystem.name);
 		}
@@ -79,7 +79,7 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		while (!processes.isEmpty()) {
 			long nextId = processes.pop();
 			processed.add(nextId);
-			for (ProcessLink processLink : linkSearchMap.getIncomingLinks(nextId)) {
+			for (ProcessLink processLink : linkSearchMap.getConnectionLinks(nextId)) {
 				ProcessNode sourceNode = createdProcesses.get(processLink.providerId);
 				ProcessNode targetNode = createdProcesses.get(processLink.processId);
 				if (sourceNode == null || targetNode == null)
@@ -213,7 +213,6 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		initContent();
 	}
 
-	// TODO: avoid double calculation here
 	private void initContent() {
 		Object defaultSelection = getDefaultSelection();
 		if (defaultSelection == null) {
@@ -221,9 +220,13 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 					new ProductSystemNode(productSystem, this, null, 0.1));
 			return;
 		}
+		// the results of the default selection are cached in the Sankey
+		// result and are not calculated again in the update
 		sankeyResult.calculate(defaultSelection);
 		double cutoff = sankeyResult.findCutoff(30);
 		update(defaultSelection, cutoff);
+		App.run("Calculate sankey results",
+				sankeyResult::precalculateImpacts);
 	}
 
 	public Object getDefaultSelection() {
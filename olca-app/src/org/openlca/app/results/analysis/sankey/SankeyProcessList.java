@@ -9,7 +9,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
 
-import org.openlca.core.matrix.ProcessLinkSearchMap;
+import org.openlca.app.editors.graphical.search.ProcessLinkSearchMap;
 import org.openlca.core.model.ProcessLink;
 
 /**
@@ -59,7 +59,7 @@ class SankeyProcessList {
 			Long recipient = queue.poll();
 			unconnected.remove(recipient);
 			connected.add(recipient);
-			for (ProcessLink link : linkSearchMap.getIncomingLinks(recipient)) {
+			for (ProcessLink link : linkSearchMap.getConnectionLinks(recipient)) {
 				Long provider = link.providerId;
 				if (!processIds.contains(provider))
 					continue;
@@ -132,7 +132,7 @@ class SankeyProcessList {
 
 	private List<Long> getWeightedRecipients(long processId) {
 		List<WeightedProcess> recipients = new ArrayList<>();
-		for (ProcessLink link : linkSearchMap.getOutgoingLinks(processId)) {
+		for (ProcessLink link : linkSearchMap.getProviderLinks(processId)) {
 			WeightedProcess wp = new WeightedProcess();
 			wp.id = link.processId;
 			wp.weight = Math.abs(sankeyResult.getLinkContribution(link));
@@ -1,15 +1,15 @@
 package org.openlca.app.results.analysis.sankey;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.ToDoubleFunction;
 
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.core.matrix.LongIndex;
 import org.openlca.core.model.ProcessLink;
-import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
@@ -18,12 +18,19 @@ import org.openlca.util.Doubles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Provides the upstream and direct results and contributions of the processes
+ * for a selected flow, impact category, or cost result in the Sankey diagram.
+ * The results of a selection are calculated once and cached as primitive
+ * arrays so that switching between selections does not require a new
+ * calculation.
+ */
 class SankeyResult {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
 
-	private ProductSystem system;
-	private FullResult results;
+	private final FullResult results;
+	private final Map<Object, Selection> cache = new ConcurrentHashMap<>();
 
 	private LongIndex processIndex;
 	private CategorizedDescriptor[] processes;
@@ -32,9 +39,9 @@ class SankeyResult {
 	private double[] directResults;
 	private double[] directContributions;
 
-	public SankeyResult(ProductSystem system, FullResult results) {
-		this.system = system;
+	public SankeyResult(FullResult results) {
 		this.results = results;
+		buildProcessIndex();
 	}
 
 	public double getDirectResult(long processId) {
@@ -62,25 +69,71 @@ class SankeyResult {
 		return values[idx];
 	}
 
+	/**
+	 * Returns the absolute upstream contribution of the process with the
+	 * `maxProcessesCount` largest absolute upstream contribution. The value is
+	 * selected in linear time without sorting all contributions.
+	 */
 	public double findCutoff(int maxProcessesCount) {
-		if (upstreamContributions.length == 0
-				|| maxProcessesCount >= upstreamContributions.length)
+		double[] contributions = upstreamContributions;
+		if (contributions == null || contributions.length == 0
+				|| maxProcessesCount <= 0
+				|| maxProcessesCount >= contributions.length)
 			return 0;
-		int length = upstreamContributions.length;
-		double[] contributions = new double[length];
-		System.arraycopy(upstreamContributions, 0, contributions, 0, length);
-		Arrays.sort(contributions);
-		return Math.abs(contributions[length - maxProcessesCount]);
+		int length = contributions.length;
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = Math.abs(contributions[i]);
+		}
+		return select(values, length - maxProcessesCount);
+	}
+
+	/**
+	 * Returns the k-th smallest value of the given array (starting from 0).
+	 * The array is partially reordered.
+	 */
+	private static double select(double[] values, int k) {
+		int left = 0;
+		int right = values.length - 1;
+		while (left < right) {
+			double pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot)
+					i++;
+				while (values[j] > pivot)
+					j--;
+				if (i <= j) {
+					double t = values[i];
+					values[i] = values[j];
+					values[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return values[k];
+			}
+		}
+		return values[k];
 	}
 
 	public List<Long> getProcesseIdsAboveCutoff(double cutoff) {
-		List<Long> processes = new ArrayList<>();
-		for (Long process : system.processes) {
-			double contr = getUpstreamContribution(process);
-			if (Math.abs(contr) >= cutoff)
-				processes.add(process);
+		List<Long> ids = new ArrayList<>();
+		double[] contributions = upstreamContributions;
+		if (contributions == null)
+			return ids;
+		for (int i = 0; i < contributions.length; i++) {
+			if (Math.abs(contributions[i]) >= cutoff) {
+				ids.add(processes[i].id);
+			}
 		}
-		return processes;
+		return ids;
 	}
 
 	public double getLinkContribution(ProcessLink link) {
@@ -91,41 +144,75 @@ class SankeyResult {
 		return totalContr * linkShare;
 	}
 
+	/**
+	 * Sets the results of the given selection as the current results. They
+	 * are calculated if they are not yet cached.
+	 */
 	public void calculate(Object selection) {
+		Selection s = get(selection);
+		upstreamResults = s.upstreamResults;
+		upstreamContributions = s.upstreamContributions;
+		directResults = s.directResults;
+		directContributions = s.directContributions;
+	}
+
+	/**
+	 * Calculates the results of the impact categories in advance. This is
+	 * intended to be called in a background job so that switching to an
+	 * impact category in the diagram does not require a calculation.
+	 */
+	public void precalculateImpacts() {
+		if (results == null || !results.hasImpactResults())
+			return;
+		log.trace("Precalculate Sankey results of impact categories");
+		for (ImpactCategoryDescriptor impact : results.getImpacts()) {
+			get(impact);
+		}
+		log.trace("Precalculation done");
+	}
+
+	private Selection get(Object selection) {
+		if (selection == null)
+			return calculateSelection(null);
+		return cache.computeIfAbsent(selection, this::calculateSelection);
+	}
+
+	private Selection calculateSelection(Object selection) {
 		log.trace("Calculate Sankey result for selection {}", selection);
-		buildProcessIndex();
+		Selection s = new Selection();
 		if (selection instanceof FlowDescriptor) {
 			FlowDescriptor f = (FlowDescriptor) selection;
-			upstreamResults = vec(p -> results.getUpstreamFlowResult(p, f));
-			directResults = vec(p -> results.getDirectFlowResult(p, f));
+			s.upstreamResults = vec(p -> results.getUpstreamFlowResult(p, f));
+			s.directResults = vec(p -> results.getDirectFlowResult(p, f));
 		} else if (selection instanceof ImpactCategoryDescriptor) {
 			ImpactCategoryDescriptor i = (ImpactCategoryDescriptor) selection;
-			upstreamResults = vec(p -> results.getUpstreamImpactResult(p, i));
-			directResults = vec(p -> results.getDirectImpactResult(p, i));
+			s.upstreamResults = vec(p -> results.getUpstreamImpactResult(p, i));
+			s.directResults = vec(p -> results.getDirectImpactResult(p, i));
 		} else if (selection instanceof CostResultDescriptor) {
 			CostResultDescriptor c = (CostResultDescriptor) selection;
-			upstreamResults = vec(p -> {
+			s.upstreamResults = vec(p -> {
 				double v = results.getUpstreamCostResult(p);
 				return c.forAddedValue && v != 0 ? -v : v;
 			});
-			directResults = vec(p -> {
+			s.directResults = vec(p -> {
 				double v = results.getDirectCostResult(p);
 				return c.forAddedValue && v != 0 ? -v : v;
 			});
 		} else {
-			directResults = upstreamResults = new double[processIndex.size()];
+			s.directResults = s.upstreamResults = new double[processIndex.size()];
 		}
 
 		// calculate the contributions
 		double refVal = Math.max(
-				Math.abs(Doubles.min(upstreamResults)),
-				Math.abs(Doubles.max(upstreamResults)));
-		upstreamContributions = calcContributions(
-				upstreamResults, refVal);
-		directContributions = calcContributions(
-				directResults, refVal);
+				Math.abs(Doubles.min(s.upstreamResults)),
+				Math.abs(Doubles.max(s.upstreamResults)));
+		s.upstreamContributions = calcContributions(
+				s.upstreamResults, refVal);
+		s.directContributions = calcContributions(
+				s.directResults, refVal);
 
 		log.trace("Calculation done");
+		return s;
 	}
 
 	private double[] calcContributions(double[] values, double ref) {
@@ -161,4 +248,12 @@ class SankeyResult {
 		}
 	}
 
+	/** The cached results of a selection. */
+	private static class Selection {
+		double[] upstreamResults;
+		double[] upstreamContributions;
+		double[] directResults;
+		double[] directContributions;
+	}
+
 }
@@ -16,6 +16,7 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.Section;
 import org.openlca.app.M;
 import org.openlca.app.rcp.html.HtmlView;
+import org.openlca.app.rcp.html.MapDataServer;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.UI;
@@ -33,6 +34,15 @@ class LocationMap {
 	private LocationPage page;
 	private Browser browser;
 
+	/**
+	 * The points of the map are loaded by the page from the map data server;
+	 * this is the JSON array of the current points.
+	 */
+	private volatile String data = "[]";
+	private MapDataServer server;
+	private String layerId;
+	private int version;
+
 	static LocationMap create(LocationPage page, Composite body, FormToolkit tk) {
 		return new LocationMap(page, body, tk);
 	}
@@ -48,6 +58,11 @@ class LocationMap {
 		browserComp.setLayout(new FillLayout());
 		browser = new Browser(browserComp, SWT.NONE);
 		browser.setJavascriptEnabled(true);
+		server = MapDataServer.get();
+		if (server != null) {
+			layerId = server.register((bbox, zoom) -> data);
+			browser.addDisposeListener(e -> server.remove(layerId));
+		}
 		AtomicBoolean loaded = new AtomicBoolean(false);
 		browser.addProgressListener(new ProgressAdapter() {
 			@Override
@@ -81,7 +96,13 @@ class LocationMap {
 		}
 		String json = new Gson().toJson(points);
 		try {
-			browser.execute("setData(" + json + ")");
+			if (server == null) {
+				browser.execute("setData(" + json + ")");
+				return;
+			}
+			data = json;
+			String url = server.getUrl(layerId) + "?v=" + (++version);
+			browser.execute("loadData('" + url + "')");
 		} catch (Exception e) {
 			log.warn("Error setting location data", e);
 			Warning.showBox(M.MapCanNotBeDisplayed);
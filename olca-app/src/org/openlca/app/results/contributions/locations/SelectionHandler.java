@@ -4,7 +4,6 @@ import java.util.Collections;
 import java.util.List;
 
 import org.openlca.app.components.ResultTypeSelection.EventHandler;
-import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.app.util.Labels;
@@ -16,8 +15,6 @@ import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.results.ContributionItem;
 import org.openlca.core.results.ContributionResult;
-import org.openlca.core.results.ContributionSet;
-import org.openlca.core.results.LocationContribution;
 import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,52 +24,42 @@ class SelectionHandler implements EventHandler {
 	private LocationPage page;
 	private ContributionResult result;
 
-	private LocationContribution calculator;
 	private TreeContentBuilder inputBuilder;
 
 	SelectionHandler(LocationPage page) {
 		this.page = page;
 		this.result = page.result;
 		this.inputBuilder = new TreeContentBuilder(page);
-		calculator = new LocationContribution(
-				result, Cache.getEntityCache());
 	}
 
 	@Override
 	public void flowSelected(FlowDescriptor flow) {
-		if (calculator == null || flow == null)
+		if (result == null || flow == null)
 			return;
 		String unit = Labels.getRefUnit(flow);
-		ContributionSet<Location> set = calculator.calculate(flow);
 		double total = result.getTotalFlowResult(flow);
-		setData(set, flow, total, unit);
+		setData(flow, total, unit);
 	}
 
 	@Override
 	public void impactCategorySelected(ImpactCategoryDescriptor impact) {
-		if (calculator == null || impact == null)
+		if (result == null || impact == null)
 			return;
 		String unit = impact.referenceUnit;
-		ContributionSet<Location> set = calculator.calculate(impact);
 		double total = result.getTotalImpactResult(impact);
-		setData(set, impact, total, unit);
+		setData(impact, total, unit);
 	}
 
 	@Override
 	public void costResultSelected(CostResultDescriptor cost) {
-		if (calculator == null || cost == null)
+		if (result == null || cost == null)
 			return;
 		String unit = getCurrency();
+		double total = result.totalCosts;
 		if (cost.forAddedValue) {
-			ContributionSet<Location> set = calculator.addedValues();
-			double total = result.totalCosts;
 			total = total == 0 ? 0 : -total;
-			setData(set, cost, total, unit);
-		} else {
-			ContributionSet<Location> set = calculator.netCosts();
-			double total = result.totalCosts;
-			setData(set, cost, total, unit);
 		}
+		setData(cost, total, unit);
 	}
 
 	private String getCurrency() {
@@ -90,9 +77,9 @@ class SelectionHandler implements EventHandler {
 		}
 	}
 
-	private void setData(ContributionSet<Location> set,
-			BaseDescriptor selection, double total, String unit) {
-		List<LocationItem> items = inputBuilder.build(set, selection, total);
+	private void setData(BaseDescriptor selection, double total,
+			String unit) {
+		List<LocationItem> items = inputBuilder.build(selection, total);
 		Collections.sort(items, (item1, item2) -> {
 			if (item1.contribution == null || item2.contribution == null)
 				return 0;
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.function.ToDoubleFunction;
 
 import org.openlca.app.db.Cache;
 import org.openlca.app.util.CostResultDescriptor;
@@ -17,18 +17,38 @@ import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.openlca.core.results.ContributionItem;
 import org.openlca.core.results.ContributionResult;
-import org.openlca.core.results.ContributionSet;
 import org.openlca.core.results.Contributions;
 
+import gnu.trove.list.array.TIntArrayList;
+
 /**
- * Creates the content that should be displayed in the location tree for a given
+ * Creates the content that should be displayed in the location tree for a
+ * given selection. The processes are mapped once to the positions of their
+ * locations. For a selection, the direct results of the processes are
+ * collected in a vector which is then summed up by location. The direct
+ * result vectors are cached so that they are only calculated once per
  * selection.
  */
 class TreeContentBuilder {
 
 	private LocationPage page;
 	private ContributionResult result;
-	private Map<Location, List<ProcessDescriptor>> index = new HashMap<>();
+
+	/** The locations; a process without location is mapped to `null`. */
+	private final List<Location> locations = new ArrayList<>();
+
+	/** The processes of the result. */
+	private final List<ProcessDescriptor> processes = new ArrayList<>();
+
+	/** Contains for each process the position of its location. */
+	private int[] locationIndex;
+
+	/** Contains for each location the positions of its processes. */
+	private final List<TIntArrayList> locationProcesses = new ArrayList<>();
+
+	/** The cached direct result vectors of flows and impact categories. */
+	private final Map<BaseDescriptor, double[]> directResults = new HashMap<>();
+	private double[] directCosts;
 
 	TreeContentBuilder(LocationPage page) {
 		this.page = page;
@@ -40,85 +60,115 @@ class TreeContentBuilder {
 		if (result == null)
 			return;
 		EntityCache cache = Cache.getEntityCache();
+		Map<Long, Integer> positions = new HashMap<>();
+		TIntArrayList index = new TIntArrayList();
 		for (CategorizedDescriptor process : result.getProcesses()) {
 			if (!(process instanceof ProcessDescriptor))
 				continue;
 			ProcessDescriptor p = (ProcessDescriptor) process;
-			Location location = null;
-			if (p.location != null) {
-				location = cache.get(Location.class, p.location);
-			}
-			List<ProcessDescriptor> list = index.get(location);
-			if (list == null) {
-				list = new ArrayList<>();
-				index.put(location, list);
+			long locationId = p.location != null ? p.location : 0L;
+			Integer pos = positions.get(locationId);
+			if (pos == null) {
+				Location location = null;
+				if (p.location != null) {
+					location = cache.get(Location.class, p.location);
+				}
+				pos = locations.size();
+				locations.add(location);
+				locationProcesses.add(new TIntArrayList());
+				positions.put(locationId, pos);
 			}
-			list.add(p);
+			locationProcesses.get(pos).add(processes.size());
+			index.add(pos);
+			processes.add(p);
 		}
+		locationIndex = index.toArray();
 	}
 
-	List<LocationItem> build(ContributionSet<Location> set,
-			BaseDescriptor selection, double total) {
+	List<LocationItem> build(BaseDescriptor selection, double total) {
 		List<LocationItem> items = new ArrayList<>();
-		for (ContributionItem<Location> contribution : set.contributions) {
-			if (Math.abs(contribution.share) < page.cutoff)
+		if (result == null || selection == null)
+			return items;
+		double[] direct = getDirectResults(selection);
+		double[] amounts = new double[locations.size()];
+		for (int i = 0; i < direct.length; i++) {
+			amounts[locationIndex[i]] += direct[i];
+		}
+		for (int pos = 0; pos < amounts.length; pos++) {
+			double amount = amounts[pos];
+			double share = total == 0 ? 0 : amount / total;
+			if (Math.abs(share) < page.cutoff)
 				continue;
-			if (contribution.amount == 0 && page.skipZeros)
+			if (amount == 0 && page.skipZeros)
 				continue;
-			items.add(new LocationItem(contribution));
+			ContributionItem<Location> contribution = new ContributionItem<>();
+			contribution.item = locations.get(pos);
+			contribution.amount = amount;
+			contribution.share = share;
+			LocationItem item = new LocationItem(contribution);
+			addProcessContributions(item, pos, direct, total);
+			items.add(item);
 		}
-		Contributions.calculate(index.keySet(), total, (location) -> getAmount(location, items, selection, total));
 		return items;
 	}
 
-	private double getAmount(Location location, List<LocationItem> items, BaseDescriptor selection, double total) {
-		LocationItem elem = getItem(items, location);
-		if (elem == null)
-			return 0;
-		List<ProcessDescriptor> list = index.get(location);
-		double amount = 0;
-		for (ProcessDescriptor p : list) {
-			double r = getSingleResult(p, selection);
+	private void addProcessContributions(LocationItem item, int location,
+			double[] direct, double total) {
+		TIntArrayList list = locationProcesses.get(location);
+		for (int i = 0; i < list.size(); i++) {
+			int pos = list.get(i);
+			double r = direct[pos];
 			if (r == 0 && page.skipZeros)
 				continue;
-			ContributionItem<ProcessDescriptor> item = new ContributionItem<>();
-			item.rest = p == null;
-			item.item = p;
-			item.amount = r;
-			item.share = r / total;
-			elem.processContributions.add(item);
-			amount += r;
+			ContributionItem<ProcessDescriptor> c = new ContributionItem<>();
+			c.item = processes.get(pos);
+			c.amount = r;
+			c.share = r / total;
+			item.processContributions.add(c);
 		}
-		Contributions.sortDescending(elem.processContributions);
-		return amount;
+		Contributions.sortDescending(item.processContributions);
 	}
 
-	private double getSingleResult(ProcessDescriptor process,
-			BaseDescriptor selection) {
-		if (process == null || selection == null)
-			return 0;
+	/**
+	 * Returns the vector with the direct results of the processes for the
+	 * given selection.
+	 */
+	private double[] getDirectResults(BaseDescriptor selection) {
+		if (selection instanceof CostResultDescriptor) {
+			if (directCosts == null) {
+				directCosts = vec(p -> result.getDirectCostResult(p));
+			}
+			CostResultDescriptor d = (CostResultDescriptor) selection;
+			if (!d.forAddedValue)
+				return directCosts;
+			double[] addedValues = new double[directCosts.length];
+			for (int i = 0; i < addedValues.length; i++) {
+				double costs = directCosts[i];
+				addedValues[i] = costs == 0 ? 0 : -costs;
+			}
+			return addedValues;
+		}
+		double[] vector = directResults.get(selection);
+		if (vector != null)
+			return vector;
 		if (selection instanceof ImpactCategoryDescriptor) {
 			ImpactCategoryDescriptor d = (ImpactCategoryDescriptor) selection;
-			return result.getDirectImpactResult(process, d);
-		}
-		if (selection instanceof FlowDescriptor) {
+			vector = vec(p -> result.getDirectImpactResult(p, d));
+		} else if (selection instanceof FlowDescriptor) {
 			FlowDescriptor d = (FlowDescriptor) selection;
-			return result.getDirectFlowResult(process, d);
-		}
-		if (selection instanceof CostResultDescriptor) {
-			double costs = result.getDirectCostResult(process);
-			CostResultDescriptor d = (CostResultDescriptor) selection;
-			return d.forAddedValue ? costs == 0 ? 0 : -costs : costs;
+			vector = vec(p -> result.getDirectFlowResult(p, d));
+		} else {
+			vector = new double[processes.size()];
 		}
-		return 0;
+		directResults.put(selection, vector);
+		return vector;
 	}
 
-	private LocationItem getItem(List<LocationItem> items, Location location) {
-		for (LocationItem item : items) {
-			Location other = item.contribution.item;
-			if (Objects.equals(other, location))
-				return item;
+	private double[] vec(ToDoubleFunction<ProcessDescriptor> fn) {
+		double[] vector = new double[processes.size()];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = fn.applyAsDouble(processes.get(i));
 		}
-		return null;
+		return vector;
 	}
-}
\ No newline at end of file
+}
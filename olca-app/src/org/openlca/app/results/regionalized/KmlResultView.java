@@ -1,12 +1,8 @@
 package org.openlca.app.results.regionalized;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.ui.forms.IManagedForm;
@@ -14,9 +10,9 @@ import org.eclipse.ui.forms.editor.FormEditor;
 import org.eclipse.ui.forms.editor.FormPage;
 import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.ScrolledForm;
-import org.openlca.app.App;
 import org.openlca.app.components.ResultTypeSelection;
 import org.openlca.app.rcp.html.HtmlView;
+import org.openlca.app.rcp.html.MapDataServer;
 import org.openlca.app.rcp.html.WebPage;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.util.Labels;
@@ -27,8 +23,6 @@ import org.openlca.geo.RegionalizedResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.Gson;
-
 import javafx.scene.web.WebEngine;
 
 class KmlResultView extends FormPage implements WebPage {
@@ -38,10 +32,21 @@ class KmlResultView extends FormPage implements WebPage {
 	private RegionalizedResult result;
 	private WebEngine webkit;
 	private ResultTypeSelection flowImpactSelection;
-	private boolean incompleteData = false;
 	private boolean loaded;
 	private CalculationSetup setup;
 
+	/**
+	 * The page loads the features of the selected result from this layer via
+	 * the map data server.
+	 */
+	private final ResultMapLayer layer = new ResultMapLayer();
+	private MapDataServer server;
+	private String layerId;
+	private int version;
+
+	/** A command that is executed when the page gets active again. */
+	private String pendingCommand;
+
 	public KmlResultView(FormEditor editor, RegionalizedResult result, CalculationSetup setup) {
 		super(editor, "KmlResultView", "Result map");
 		this.result = result;
@@ -71,6 +76,10 @@ class KmlResultView extends FormPage implements WebPage {
 				Images.get(result.result));
 		FormToolkit toolkit = mform.getToolkit();
 		Composite body = UI.formBody(form, toolkit);
+		server = MapDataServer.get();
+		if (server != null) {
+			layerId = server.register(layer);
+		}
 		Composite composite = toolkit.createComposite(body);
 		UI.gridLayout(composite, 2);
 		flowImpactSelection = ResultTypeSelection
@@ -85,19 +94,30 @@ class KmlResultView extends FormPage implements WebPage {
 	@Override
 	public void setActive(boolean active) {
 		super.setActive(active);
-		if (incompleteData && webkit != null) {
-			// reset browser data
-			try {
-				webkit.executeScript("initData()");
-			} catch (Exception e) {
-				log.error("failed to evaluate initData()", e);
-			}
+		if (active && pendingCommand != null && webkit != null) {
+			String command = pendingCommand;
+			pendingCommand = null;
+			evaluate(command);
 		}
 	}
 
-	private class KmlSelectionHandler extends SelectionHandler {
+	@Override
+	public void dispose() {
+		if (server != null) {
+			server.remove(layerId);
+		}
+		super.dispose();
+	}
+
+	private void evaluate(String command) {
+		try {
+			webkit.executeScript(command);
+		} catch (Exception e) {
+			log.error("failed to evaluate " + command, e);
+		}
+	}
 
-		private List<Job> delayedJobs = new ArrayList<>();
+	private class KmlSelectionHandler extends SelectionHandler {
 
 		private KmlSelectionHandler(RegionalizedResult result) {
 			super(result);
@@ -105,14 +125,20 @@ class KmlResultView extends FormPage implements WebPage {
 
 		@Override
 		protected void processResultData(List<LocationResult> results) {
-			if (!loaded)
+			if (!loaded || server == null)
 				return;
-			delayedJobs.clear();
-			incompleteData = false;
+			layer.setResults(results);
 			double maximum = getMaximum(results);
-			evaluate("initData(" + maximum + ")");
-			for (LocationResult result : results)
-				sendToView(result);
+			// the version parameter makes sure that the page does not use
+			// cached features of another result
+			String url = server.getUrl(layerId) + "?v=" + (++version);
+			String command = "setLayer('" + url + "', " + maximum + ")";
+			if (!isActive()) {
+				pendingCommand = command;
+				return;
+			}
+			pendingCommand = null;
+			evaluate(command);
 		}
 
 		private double getMaximum(List<LocationResult> results) {
@@ -126,46 +152,6 @@ class KmlResultView extends FormPage implements WebPage {
 				return 0;
 			return maximum;
 		}
-
-		private void sendToView(LocationResult result) {
-			if (result == null)
-				return;
-			if (result.amount == 0d)
-				return;
-			Map<String, Object> item = new HashMap<String, Object>();
-			item.put("kml", result.kmlFeature.kml);
-			item.put("amount", result.amount);
-			delayedJobs.add(App.runInUI("Setting item", () -> evaluate(item)));
-		}
-
-		private void evaluate(Object value) {
-			if (!isActive()) {
-				incompleteData = true;
-				cancelDelayedJobs();
-				return;
-			}
-			if (webkit == null)
-				return;
-			String command = null;
-			if (value instanceof String)
-				command = value.toString();
-			else {
-				Gson gson = new Gson();
-				String json = gson.toJson(value);
-				command = "addFeature(" + json + ")";
-			}
-			try {
-				webkit.executeScript(command);
-			} catch (Exception e) {
-				log.error("failed to evaluate " + value, e);
-			}
-		}
-
-		private void cancelDelayedJobs() {
-			for (Job job : delayedJobs)
-				job.cancel();
-		}
-
 	}
 
 }
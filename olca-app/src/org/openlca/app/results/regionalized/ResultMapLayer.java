@@ -0,0 +1,224 @@
+package org.openlca.app.results.regionalized;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openlca.app.rcp.html.MapDataServer;
+import org.openlca.geo.kml.KmlFeature;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Provides the location results of the KML result view as GeoJSON features
+ * for the map data server. The geometries are cached per location together
+ * with simplified versions for the zoom levels of the map: on a zoom level,
+ * a geometry is simplified with a tolerance of about one pixel. Only the
+ * features that intersect with the requested bounding box are returned.
+ * When another result is selected, only the amounts of the locations are
+ * updated.
+ */
+class ResultMapLayer implements MapDataServer.Layer {
+
+	/** For larger zoom levels the original geometries are used. */
+	private static final int MAX_ZOOM = 12;
+
+	/** Location ID -> cached geometry of the location. */
+	private final Map<Long, Shape> shapes = new HashMap<>();
+
+	/** The current results: location ID -> amount. */
+	private volatile Map<Long, Double> amounts = new HashMap<>();
+
+	/** Sets the results that should be displayed in the map. */
+	void setResults(List<LocationResult> results) {
+		// the shapes are only added in this method which is called in the UI
+		// thread; thus, we can read them without locking here
+		Map<Long, Shape> newShapes = new HashMap<>();
+		Map<Long, Double> nextAmounts = new HashMap<>();
+		for (LocationResult r : results) {
+			if (r == null || r.amount <= 0)
+				continue;
+			if (!shapes.containsKey(r.locationId)
+					&& !newShapes.containsKey(r.locationId)) {
+				Shape shape = Shape.of(r.kmlFeature);
+				if (shape == null)
+					continue;
+				newShapes.put(r.locationId, shape);
+			}
+			Double amount = nextAmounts.get(r.locationId);
+			nextAmounts.put(r.locationId,
+					amount == null ? r.amount : amount + r.amount);
+		}
+		synchronized (shapes) {
+			shapes.putAll(newShapes);
+			amounts = nextAmounts;
+		}
+	}
+
+	@Override
+	public String getData(double[] bbox, int zoom) {
+		Map<Long, Double> amounts;
+		Map<Long, Shape> shapes;
+		synchronized (this.shapes) {
+			amounts = this.amounts;
+			shapes = new HashMap<>(this.shapes);
+		}
+		Envelope box = bbox == null
+				? null
+				: new Envelope(bbox[0], bbox[2], bbox[1], bbox[3]);
+		int decimals = Math.min(7, 2 + Math.max(zoom, 0) / 2);
+		StringBuilder json = new StringBuilder();
+		json.append("{\"type\":\"FeatureCollection\",\"features\":[");
+		boolean first = true;
+		for (Map.Entry<Long, Double> e : amounts.entrySet()) {
+			Shape shape = shapes.get(e.getKey());
+			if (shape == null)
+				continue;
+			if (box != null && !box.intersects(shape.envelope))
+				continue;
+			if (!first)
+				json.append(',');
+			first = false;
+			json.append("{\"type\":\"Feature\",\"id\":").append(e.getKey())
+					.append(",\"properties\":{\"amount\":")
+					.append(e.getValue()).append("},\"geometry\":");
+			writeGeometry(shape.forZoom(zoom), decimals, json);
+			json.append('}');
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+	private void writeGeometry(Geometry g, int decimals, StringBuilder json) {
+		if (g instanceof Point) {
+			json.append("{\"type\":\"Point\",\"coordinates\":");
+			writeCoordinate(g.getCoordinate(), decimals, json);
+		} else if (g instanceof LineString) {
+			json.append("{\"type\":\"LineString\",\"coordinates\":");
+			writeCoordinates(g.getCoordinates(), decimals, json);
+		} else if (g instanceof Polygon) {
+			json.append("{\"type\":\"Polygon\",\"coordinates\":");
+			writePolygon((Polygon) g, decimals, json);
+		} else if (g instanceof MultiPoint) {
+			json.append("{\"type\":\"MultiPoint\",\"coordinates\":");
+			writeCoordinates(g.getCoordinates(), decimals, json);
+		} else if (g instanceof MultiLineString) {
+			json.append("{\"type\":\"MultiLineString\",\"coordinates\":[");
+			for (int i = 0; i < g.getNumGeometries(); i++) {
+				if (i > 0)
+					json.append(',');
+				writeCoordinates(g.getGeometryN(i).getCoordinates(),
+						decimals, json);
+			}
+			json.append(']');
+		} else if (g instanceof MultiPolygon) {
+			json.append("{\"type\":\"MultiPolygon\",\"coordinates\":[");
+			for (int i = 0; i < g.getNumGeometries(); i++) {
+				if (i > 0)
+					json.append(',');
+				writePolygon((Polygon) g.getGeometryN(i), decimals, json);
+			}
+			json.append(']');
+		} else if (g instanceof GeometryCollection) {
+			json.append("{\"type\":\"GeometryCollection\",\"geometries\":[");
+			for (int i = 0; i < g.getNumGeometries(); i++) {
+				if (i > 0)
+					json.append(',');
+				writeGeometry(g.getGeometryN(i), decimals, json);
+			}
+			json.append("]}");
+			return;
+		} else {
+			json.append("null");
+			return;
+		}
+		json.append('}');
+	}
+
+	private void writePolygon(Polygon p, int decimals, StringBuilder json) {
+		json.append('[');
+		writeCoordinates(p.getExteriorRing().getCoordinates(), decimals, json);
+		for (int i = 0; i < p.getNumInteriorRing(); i++) {
+			json.append(',');
+			writeCoordinates(p.getInteriorRingN(i).getCoordinates(),
+					decimals, json);
+		}
+		json.append(']');
+	}
+
+	private void writeCoordinates(Coordinate[] coordinates, int decimals,
+			StringBuilder json) {
+		json.append('[');
+		for (int i = 0; i < coordinates.length; i++) {
+			if (i > 0)
+				json.append(',');
+			writeCoordinate(coordinates[i], decimals, json);
+		}
+		json.append(']');
+	}
+
+	private void writeCoordinate(Coordinate c, int decimals,
+			StringBuilder json) {
+		json.append('[');
+		writeNumber(c.x, decimals, json);
+		json.append(',');
+		writeNumber(c.y, decimals, json);
+		json.append(']');
+	}
+
+	private void writeNumber(double value, int decimals, StringBuilder json) {
+		double factor = Math.pow(10, decimals);
+		double rounded = Math.round(value * factor) / factor;
+		if (rounded == Math.rint(rounded)) {
+			json.append((long) rounded);
+		} else {
+			json.append(rounded);
+		}
+	}
+
+	/** A cached geometry of a location with its simplified versions. */
+	private static class Shape {
+
+		final Geometry geometry;
+		final Envelope envelope;
+		private final Geometry[] simplified = new Geometry[MAX_ZOOM + 1];
+
+		private Shape(Geometry geometry) {
+			this.geometry = geometry;
+			this.envelope = geometry.getEnvelopeInternal();
+		}
+
+		static Shape of(KmlFeature feature) {
+			if (feature == null || feature.geometry == null)
+				return null;
+			return new Shape(feature.geometry);
+		}
+
+		synchronized Geometry forZoom(int zoom) {
+			if (zoom > MAX_ZOOM || geometry instanceof Point)
+				return geometry;
+			int z = Math.max(zoom, 0);
+			Geometry g = simplified[z];
+			if (g != null)
+				return g;
+			// the size of a pixel at the equator in degrees
+			double tolerance = 360.0 / (256.0 * Math.pow(2, z));
+			g = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+			if (g == null || g.isEmpty()) {
+				g = geometry;
+			}
+			simplified[z] = g;
+			return g;
+		}
+	}
+}
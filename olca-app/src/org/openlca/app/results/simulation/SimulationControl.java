@@ -38,9 +38,11 @@ class SimulationControl {
 			Display display = Display.getCurrent();
 			SimulationProgress progress = new SimulationProgress(display,
 					editor, page);
+			page.progressStarted();
 			ModalContext.run(progress, true, monitor, display);
 		} catch (Exception e) {
 			log.error("Could not start simulation progress", e);
+			page.progressDone(0);
 		}
 	}
 }
@@ -40,7 +40,7 @@ class SimulationPage extends FormPage {
 
 	private final int FLOW = 0;
 	private final int IMPACT = 1;
-	private int resultType = FLOW;
+	private volatile int resultType = FLOW;
 
 	private final SimulationEditor editor;
 	private final Simulator simulator;
@@ -54,7 +54,20 @@ class SimulationPage extends FormPage {
 	private ImpactCategoryViewer impactViewer;
 
 	/** A pinned product which results should be displayed. */
-	private ProcessProduct resultPin;
+	private volatile ProcessProduct resultPin;
+
+	/*
+	 * The selected flow and impact category are also read from the simulation
+	 * thread which collects the values of the selection between two runs.
+	 */
+	private volatile FlowDescriptor selectedFlow;
+	private volatile ImpactCategoryDescriptor selectedImpact;
+
+	/**
+	 * True while the simulation is running. The result must not be read in
+	 * the UI thread then because the simulation thread appends to it.
+	 */
+	private volatile boolean running;
 
 	public SimulationPage(SimulationEditor editor) {
 		super(editor, "SimulationPage", M.MonteCarloSimulation);
@@ -148,6 +161,7 @@ class SimulationPage extends FormPage {
 		GridData gd = UI.gridData(statisticsCanvas, true, true);
 		gd.verticalIndent = 10;
 		gd.minimumHeight = 250;
+		updateSelection();
 	}
 
 	private void initImpactCheckViewer(FormToolkit toolkit, Composite section) {
@@ -175,35 +189,75 @@ class SimulationPage extends FormPage {
 	}
 
 	private void updateSelection() {
-		if (result == null || statisticsCanvas == null)
+		if (flowViewer != null) {
+			selectedFlow = flowViewer.getSelected();
+		}
+		if (impactViewer != null) {
+			selectedImpact = impactViewer.getSelected();
+		}
+		// while the simulation is running, the values of the selection are
+		// sent with the next progress update
+		if (result == null || statisticsCanvas == null || running)
 			return;
+		double[] vals = values();
+		if (vals != null) {
+			statisticsCanvas.setValues(vals);
+		}
+	}
+
+	/**
+	 * Returns the simulation values of the current selection or
+	 * null if nothing is selected. This is called from the simulation thread
+	 * between two runs or from the UI thread when the simulation is not
+	 * running.
+	 */
+	double[] values() {
+		if (result == null)
+			return null;
+		ProcessProduct pin = resultPin;
 		if (resultType == FLOW) {
-			FlowDescriptor flow = flowViewer.getSelected();
+			FlowDescriptor flow = selectedFlow;
 			if (flow == null)
-				return;
-			double[] vals = resultPin != null
-					? result.getAllUpstream(resultPin, flow)
+				return null;
+			return pin != null
+					? result.getAllUpstream(pin, flow)
 					: result.getAll(flow);
-			statisticsCanvas.setValues(vals);
 		} else {
-			ImpactCategoryDescriptor cat = impactViewer.getSelected();
+			ImpactCategoryDescriptor cat = selectedImpact;
 			if (cat == null)
-				return;
-			double[] vals = resultPin != null
-					? result.getAllUpstream(resultPin, cat)
+				return null;
+			return pin != null
+					? result.getAllUpstream(pin, cat)
 					: result.getAll(cat);
-			statisticsCanvas.setValues(vals);
 		}
 	}
 
-	void updateProgress() {
-		if (result == null)
+	void progressStarted() {
+		running = true;
+	}
+
+	/**
+	 * Refreshes the statistics and progress bar. The given value is the number
+	 * of simulation runs that were executed since the simulation was started;
+	 * the values are the simulation values of the selection that were
+	 * collected by the simulation thread.
+	 */
+	void updateProgress(int runs, double[] values) {
+		if (result == null || form.isDisposed())
 			return;
-		updateSelection();
-		progressBar.setSelection(progressBar.getSelection() + 1);
+		if (values != null && statisticsCanvas != null) {
+			statisticsCanvas.setValues(values);
+		}
+		if (!progressBar.isDisposed()) {
+			progressBar.setSelection(runs);
+		}
 	}
 
 	void progressDone(int numberOfIteration) {
+		running = false;
+		if (form.isDisposed() || progressSection.isDisposed())
+			return;
+		updateSelection();
 		progressSection.dispose();
 		form.reflow(true);
 	}
@@ -14,11 +14,20 @@ import org.openlca.core.math.Simulator;
  */
 class SimulationProgress implements IRunnableWithProgress {
 
+	/**
+	 * The minimum time in milliseconds between two updates of the simulation
+	 * page. Refreshing the page after each run would flood the UI thread with
+	 * update requests for fast simulations.
+	 */
+	private static final long UPDATE_INTERVAL = 250;
+
 	private Display display;
 	private int numberOfRuns;
 	private Simulator solver;
 	private SimulationPage page;
 
+	private long lastUpdate;
+
 	public SimulationProgress(Display display, SimulationEditor editor,
 			SimulationPage page) {
 		this.display = display;
@@ -33,34 +42,41 @@ class SimulationProgress implements IRunnableWithProgress {
 		// one simulation has already be done at init step, so only
 		// (numberOfRuns - 1) remains
 		monitor.beginTask(M.MonteCarloSimulation + "...", numberOfRuns - 1);
+		lastUpdate = System.currentTimeMillis();
 		for (int i = 0; i < numberOfRuns - 1; i++) {
 			if (monitor.isCanceled()) {
 				doneAfter(i);
-				break;
+				monitor.done();
+				return;
 			}
-			doNextRun();
+			solver.nextRun();
+			monitor.worked(1);
+			updatePage(i + 1);
 		}
 		monitor.done();
 		doneAfter(numberOfRuns - 1);
 	}
 
-	private void doneAfter(final int numberOfRuns) {
-		display.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				page.progressDone(numberOfRuns);
-			}
+	private void doneAfter(int runs) {
+		double[] values = page.values();
+		display.asyncExec(() -> {
+			page.updateProgress(runs, values);
+			page.progressDone(runs);
 		});
 	}
 
-	private void doNextRun() throws InterruptedException {
-		solver.nextRun();
-		display.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				page.updateProgress();
-			}
-		});
-		Thread.sleep(10);
+	/**
+	 * Updates the page if the last update is longer than the update interval
+	 * ago. The values of the selection are copied here, between two runs, as
+	 * the UI thread must not read the result while the simulation appends to
+	 * it.
+	 */
+	private void updatePage(int runs) {
+		long time = System.currentTimeMillis();
+		if ((time - lastUpdate) < UPDATE_INTERVAL)
+			return;
+		lastUpdate = time;
+		double[] values = page.values();
+		display.asyncExec(() -> page.updateProgress(runs, values));
 	}
 }
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import org.openlca.app.db.Cache;
 import org.openlca.app.navigation.ModelTypeComparison;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.Daos;
@@ -45,7 +46,12 @@ class Search implements Runnable {
 		log.trace("run search with term {}", rawTerm);
 		ModelType[] types = typeFilter == null ? getSearchTypes()
 				: new ModelType[] { typeFilter };
+		SearchIndex index = Cache.getSearchIndex();
 		for (ModelType type : types) {
+			if (index != null) {
+				result.addAll(index.find(type, terms));
+				continue;
+			}
 			List<?> descriptors = getDescriptors(type);
 			fetchResults(descriptors);
 		}
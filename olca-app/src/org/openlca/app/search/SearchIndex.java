@@ -0,0 +1,228 @@
+package org.openlca.app.search;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openlca.app.util.Labels;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * An in-memory index of the descriptors of a database that is used by the
+ * search. For each model type, the lower-cased display names are indexed by
+ * their character trigrams so that a search term only needs to be checked
+ * against the labels that contain all trigrams of that term. The index of a
+ * model type is created lazily on the first search and is dropped when a
+ * model of that type is inserted, updated, or deleted.
+ */
+public class SearchIndex {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final Map<ModelType, TypeIndex> indices = new EnumMap<>(
+			ModelType.class);
+
+	public SearchIndex(IDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Drops the index of the given model type. Changes of locations and
+	 * categories drop all indices as they can change the display names of
+	 * other models.
+	 */
+	public synchronized void invalidate(ModelType type) {
+		if (type == null
+				|| type.isOneOf(ModelType.LOCATION, ModelType.CATEGORY)) {
+			invalidateAll();
+			return;
+		}
+		indices.remove(type);
+	}
+
+	public synchronized void invalidateAll() {
+		indices.clear();
+	}
+
+	/**
+	 * Returns the descriptors of the given type that match the given search
+	 * terms. A descriptor matches when its reference ID is equal to the only
+	 * search term or when its lower-cased display name contains all terms.
+	 */
+	List<BaseDescriptor> find(ModelType type, String[] terms) {
+		TypeIndex index = get(type);
+		if (index == null)
+			return new ArrayList<>();
+		return index.find(terms);
+	}
+
+	private synchronized TypeIndex get(ModelType type) {
+		TypeIndex index = indices.get(type);
+		if (index != null)
+			return index;
+		try {
+			long start = System.currentTimeMillis();
+			index = new TypeIndex(getDescriptors(type));
+			indices.put(type, index);
+			log.trace("created search index for {} in {} ms", type,
+					System.currentTimeMillis() - start);
+			return index;
+		} catch (Exception e) {
+			log.error("failed to create search index for " + type, e);
+			return null;
+		}
+	}
+
+	private List<?> getDescriptors(ModelType type) {
+		if (type == ModelType.PARAMETER)
+			return new ParameterDao(database).getGlobalDescriptors();
+		return Daos.root(database, type).getDescriptors();
+	}
+
+	private static class TypeIndex {
+
+		private final List<BaseDescriptor> descriptors = new ArrayList<>();
+		private final List<String> labels = new ArrayList<>();
+		private final Map<String, BaseDescriptor> refIds = new HashMap<>();
+		private final TLongObjectHashMap<TIntArrayList> trigrams = new TLongObjectHashMap<>();
+
+		TypeIndex(List<?> all) {
+			for (Object obj : all) {
+				if (!(obj instanceof BaseDescriptor))
+					continue;
+				BaseDescriptor d = (BaseDescriptor) obj;
+				String label = Labels.getDisplayName(d);
+				if (label == null)
+					label = "";
+				int pos = descriptors.size();
+				descriptors.add(d);
+				labels.add(label.toLowerCase());
+				if (d.refId != null) {
+					refIds.put(d.refId.toLowerCase(), d);
+				}
+				indexTrigrams(labels.get(pos), pos);
+			}
+			for (TIntArrayList positions : trigrams.valueCollection()) {
+				positions.trimToSize();
+			}
+		}
+
+		private void indexTrigrams(String label, int pos) {
+			for (int i = 0; i + 3 <= label.length(); i++) {
+				long key = key(label, i);
+				TIntArrayList positions = trigrams.get(key);
+				if (positions == null) {
+					positions = new TIntArrayList(4);
+					trigrams.put(key, positions);
+				}
+				// positions are added in ascending order, so we only need to
+				// check the last one to avoid duplicates
+				int n = positions.size();
+				if (n == 0 || positions.getQuick(n - 1) != pos) {
+					positions.add(pos);
+				}
+			}
+		}
+
+		List<BaseDescriptor> find(String[] terms) {
+			List<BaseDescriptor> result = new ArrayList<>();
+			if (terms == null || terms.length == 0)
+				return result;
+			// a single term can be the reference ID of a data set; this data
+			// set is added in addition to the data sets with matching labels
+			BaseDescriptor idMatch = terms.length == 1
+					? refIds.get(terms[0])
+					: null;
+			if (idMatch != null) {
+				result.add(idMatch);
+			}
+			TIntArrayList candidates = candidates(terms);
+			if (candidates == null) {
+				for (int pos = 0; pos < labels.size(); pos++) {
+					if (matches(labels.get(pos), terms))
+						add(result, descriptors.get(pos), idMatch);
+				}
+				return result;
+			}
+			for (int i = 0; i < candidates.size(); i++) {
+				int pos = candidates.getQuick(i);
+				if (matches(labels.get(pos), terms))
+					add(result, descriptors.get(pos), idMatch);
+			}
+			return result;
+		}
+
+		private void add(List<BaseDescriptor> result, BaseDescriptor d,
+				BaseDescriptor idMatch) {
+			if (d != idMatch) {
+				result.add(d);
+			}
+		}
+
+		/**
+		 * Returns the positions of the labels that contain all trigrams of the
+		 * given terms or null when no term is long enough to be looked up in
+		 * the trigram index.
+		 */
+		private TIntArrayList candidates(String[] terms) {
+			TIntArrayList candidates = null;
+			for (String term : terms) {
+				for (int i = 0; i + 3 <= term.length(); i++) {
+					TIntArrayList positions = trigrams.get(key(term, i));
+					if (positions == null)
+						return new TIntArrayList(0);
+					candidates = candidates == null
+							? positions
+							: intersect(candidates, positions);
+					if (candidates.isEmpty())
+						return candidates;
+				}
+			}
+			return candidates;
+		}
+
+		private TIntArrayList intersect(TIntArrayList a, TIntArrayList b) {
+			TIntArrayList r = new TIntArrayList(Math.min(a.size(), b.size()));
+			int i = 0, j = 0;
+			while (i < a.size() && j < b.size()) {
+				int x = a.getQuick(i);
+				int y = b.getQuick(j);
+				if (x == y) {
+					r.add(x);
+					i++;
+					j++;
+				} else if (x < y) {
+					i++;
+				} else {
+					j++;
+				}
+			}
+			return r;
+		}
+
+		private boolean matches(String label, String[] terms) {
+			for (String term : terms) {
+				if (!label.contains(term))
+					return false;
+			}
+			return true;
+		}
+
+		private static long key(String s, int i) {
+			return ((long) s.charAt(i) << 32)
+					| ((long) s.charAt(i + 1) << 16)
+					| s.charAt(i + 2);
+		}
+	}
+}
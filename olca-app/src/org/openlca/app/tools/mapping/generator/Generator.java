@@ -52,12 +52,21 @@ public class Generator implements Runnable {
 
 			log.info("create target flow matcher");
 			Matcher matcher = new Matcher(targetSystem);
-			for (FlowRef sflow : sourceFlows) {
+
+			// the matching is done in parallel; the provider information is
+			// added sequentially as it requires database access
+			log.info("match {} source flows", sourceFlows.size());
+			List<FlowRef> matches = sourceFlows.parallelStream()
+					.map(matcher::match)
+					.collect(Collectors.toList());
+			for (int i = 0; i < sourceFlows.size(); i++) {
+				FlowRef sflow = sourceFlows.get(i);
 				FlowMapEntry e = new FlowMapEntry();
 				e.sourceFlow = sflow.clone();
 				e.sourceFlow.status = Status.ok();
-				FlowRef tflow = matcher.find(sflow);
+				FlowRef tflow = matches.get(i);
 				if (tflow != null) {
+					matcher.checkAddProvider(sflow, tflow);
 					tflow = tflow.clone();
 					e.targetFlow = tflow;
 					if (Objects.equal(sflow.flow.refId, tflow.flow.refId)) {
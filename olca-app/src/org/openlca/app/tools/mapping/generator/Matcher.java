@@ -18,10 +18,16 @@ import org.openlca.io.maps.FlowRef;
 import org.openlca.util.CategoryPathBuilder;
 import org.openlca.util.Strings;
 
+/**
+ * Finds matching target flows for source flows. The matching of flows via
+ * `match` is thread-safe; adding provider information via `checkAddProvider`
+ * is not as it accesses the database and modifies the target flows.
+ */
 class Matcher {
 
 	private final IDatabase db;
 	private final Map<String, FlowRef> targetFlows;
+	private final TargetIndex index;
 
 	// helper structures for collecting provider information
 	private CategoryPathBuilder categories;
@@ -34,9 +40,14 @@ class Matcher {
 		this.targetFlows = targetSystem.getFlowRefs().stream()
 				.filter(f -> f.flow != null && f.flow.refId != null)
 				.collect(Collectors.toMap(f -> f.flow.refId, f -> f));
+		this.index = new TargetIndex(targetFlows.values());
 	}
 
-	FlowRef find(FlowRef sflow) {
+	/**
+	 * Returns the best matching target flow for the given source flow without
+	 * adding provider information. This method can be called in parallel.
+	 */
+	FlowRef match(FlowRef sflow) {
 		if (sflow == null || sflow.flow == null
 				|| sflow.flow.refId == null)
 			return null;
@@ -44,35 +55,39 @@ class Matcher {
 		// test whether there is a direct match based
 		// on the reference IDs
 		FlowRef tflow = targetFlows.get(sflow.flow.refId);
-		if (tflow != null) {
-			checkAddProvider(sflow, tflow);
+		if (tflow != null)
 			return tflow;
-		}
 
+		// only target flows with a related name word can get a score > 0;
+		// the candidates are in the same order as the target flows so that
+		// we get the same result as when scoring all target flows
+		String[] name = Words.keywords(sflow.flow.name);
+		String[] category = Words.keywords(sflow.flowCategory);
+		String[] location = Words.keywords(sflow.flowLocation);
 		FlowRef candidate = null;
 		double score = 0.0;
-		for (FlowRef c : targetFlows.values()) {
-			double s = score(sflow, c);
+		for (int pos : index.candidates(name)) {
+			TargetIndex.Target c = index.targets.get(pos);
+			double s = score(sflow, name, category, location, c);
 			if (s > score) {
-				candidate = c;
+				candidate = c.flow;
 				score = s;
 			}
 		}
-		if (candidate != null) {
-			checkAddProvider(sflow, candidate);
-		}
 		return candidate;
 	}
 
-	private double score(FlowRef sflow, FlowRef tflow) {
+	private double score(FlowRef sflow, String[] name, String[] category,
+			String[] location, TargetIndex.Target target) {
+		FlowRef tflow = target.flow;
 		if (sflow.flow == null || tflow.flow == null)
 			return 0;
-		double nameScore = Words.match(sflow.flow.name, tflow.flow.name);
+		double nameScore = Words.match(name, target.name);
 		if (nameScore < 0.01)
 			return 0;
 
-		double catScore = Words.match(sflow.flowCategory, tflow.flowCategory);
-		double locScore = Words.match(sflow.flowLocation, tflow.flowLocation);
+		double catScore = Words.match(category, target.category);
+		double locScore = Words.match(location, target.location);
 		double score = nameScore + (0.25 * catScore) + (0.25 * locScore);
 
 		// score flows with same flow type and reference units a bit higher
@@ -86,7 +101,7 @@ class Matcher {
 		return score;
 	}
 
-	private void checkAddProvider(FlowRef sourceFlow, FlowRef targetFlow) {
+	void checkAddProvider(FlowRef sourceFlow, FlowRef targetFlow) {
 		if (db == null || targetFlow == null || targetFlow.flow == null)
 			return;
 		if (targetFlow.flow.flowType == FlowType.ELEMENTARY_FLOW)
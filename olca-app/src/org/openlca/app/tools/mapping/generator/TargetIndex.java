@@ -0,0 +1,158 @@
+package org.openlca.app.tools.mapping.generator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openlca.io.maps.FlowRef;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * An index of the target flows with pre-extracted key words. It is used to
+ * find the candidates of a source flow that could get a name score larger
+ * than zero in `Words.match`: these are the target flows that have a name
+ * word that is equal to, contains, or is contained in a name word of the
+ * source flow. All other target flows can be skipped in the matching. The
+ * index is immutable after its creation and can be used from multiple
+ * threads.
+ */
+class TargetIndex {
+
+	/** The target flows in the order in which they were added. */
+	final List<Target> targets = new ArrayList<>();
+
+	/** Maps the name words to the positions of the targets that contain them. */
+	private final Map<String, TIntArrayList> wordIndex = new HashMap<>();
+
+	/** Maps the trigrams of the name words to the words that contain them. */
+	private final Map<String, List<String>> trigramIndex = new HashMap<>();
+
+	/** Caches the related target words of source words. */
+	private final Map<String, List<String>> relatedWords = new ConcurrentHashMap<>();
+
+	TargetIndex(Collection<FlowRef> flows) {
+		for (FlowRef flow : flows) {
+			if (flow == null || flow.flow == null)
+				continue;
+			Target target = new Target(flow);
+			int pos = targets.size();
+			targets.add(target);
+			for (String word : target.name) {
+				TIntArrayList positions = wordIndex.get(word);
+				if (positions == null) {
+					positions = new TIntArrayList();
+					wordIndex.put(word, positions);
+					indexTrigrams(word);
+				}
+				// positions are ascending; avoid duplicates of repeated words
+				if (positions.isEmpty()
+						|| positions.get(positions.size() - 1) != pos) {
+					positions.add(pos);
+				}
+			}
+		}
+	}
+
+	private void indexTrigrams(String word) {
+		for (int i = 0; i + 3 <= word.length(); i++) {
+			String trigram = word.substring(i, i + 3);
+			List<String> words = trigramIndex.get(trigram);
+			if (words == null) {
+				words = new ArrayList<>();
+				trigramIndex.put(trigram, words);
+			}
+			if (words.isEmpty() || words.get(words.size() - 1) != word) {
+				words.add(word);
+			}
+		}
+	}
+
+	/**
+	 * Returns the positions of the candidate targets for the given name words
+	 * of a source flow in ascending order.
+	 */
+	int[] candidates(String[] sourceWords) {
+		BitSet positions = new BitSet(targets.size());
+		for (String sourceWord : sourceWords) {
+			for (String word : related(sourceWord)) {
+				TIntArrayList list = wordIndex.get(word);
+				if (list == null)
+					continue;
+				for (int i = 0; i < list.size(); i++) {
+					positions.set(list.get(i));
+				}
+			}
+		}
+		return positions.stream().toArray();
+	}
+
+	/**
+	 * Returns the target words that are equal to, contain, or are contained in
+	 * the given word.
+	 */
+	private List<String> related(String word) {
+		List<String> cached = relatedWords.get(word);
+		if (cached != null)
+			return cached;
+		List<String> related = new ArrayList<>();
+
+		// target words that are equal to or contained in the word
+		for (int i = 0; i < word.length(); i++) {
+			for (int j = i + 1; j <= word.length(); j++) {
+				String sub = word.substring(i, j);
+				if (wordIndex.containsKey(sub) && !related.contains(sub)) {
+					related.add(sub);
+				}
+			}
+		}
+
+		// target words that contain the word; for words with at least 3
+		// characters we only need to check the words with the rarest trigram
+		// of that word
+		Collection<String> longer = null;
+		if (word.length() < 3) {
+			longer = wordIndex.keySet();
+		} else {
+			for (int i = 0; i + 3 <= word.length(); i++) {
+				List<String> words = trigramIndex.get(word.substring(i, i + 3));
+				if (words == null) {
+					longer = null;
+					break;
+				}
+				if (longer == null || words.size() < longer.size()) {
+					longer = words;
+				}
+			}
+		}
+		if (longer != null) {
+			for (String other : longer) {
+				if (other.length() > word.length() && other.contains(word)) {
+					related.add(other);
+				}
+			}
+		}
+		relatedWords.put(word, related);
+		return related;
+	}
+
+	/** A target flow with the pre-extracted key words of its attributes. */
+	static class Target {
+
+		final FlowRef flow;
+		final String[] name;
+		final String[] category;
+		final String[] location;
+
+		Target(FlowRef flow) {
+			this.flow = flow;
+			this.name = Words.keywords(flow.flow.name);
+			this.category = Words.keywords(flow.flowCategory);
+			this.location = Words.keywords(flow.flowLocation);
+		}
+	}
+}
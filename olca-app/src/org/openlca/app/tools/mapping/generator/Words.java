@@ -20,9 +20,16 @@ final class Words {
 	static double match(String a, String b) {
 		if (a == null || b == null)
 			return 0.0;
+		return match(keywords(a), keywords(b));
+	}
 
-		String[] wordsA = keywords(a);
-		String[] wordsB = keywords(b);
+	/**
+	 * Same as `match(String, String)` but for already extracted key words (see
+	 * `keywords(String)`).
+	 */
+	static double match(String[] wordsA, String[] wordsB) {
+		if (wordsA == null || wordsB == null)
+			return 0.0;
 		if (wordsA.length == 0 || wordsB.length == 0)
 			return 0;
 
@@ -70,7 +77,11 @@ final class Words {
 		return matched / total;
 	}
 
-	private static String[] keywords(String s) {
+	/**
+	 * Splits the given string into lower-case key words. Non-alphanumeric
+	 * characters are used as word separators.
+	 */
+	static String[] keywords(String s) {
 		if (Strings.nullOrEmpty(s))
 			return new String[0];
 
@@ -6,6 +6,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.openlca.core.matrix.cache.ConversionTable;
 import org.openlca.core.model.Flow;
@@ -20,145 +24,227 @@ import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Replaces the mapped flows in the exchange or LCIA factor table. Only the
+ * rows that contain a mapped flow are selected, in chunks of flow IDs; the
+ * updates are then executed in batches.
+ * All changes of a table are committed in a single transaction at the end so
+ * that a failure does not leave the table partly switched to the target
+ * flows.
+ */
 class Cursor implements Runnable {
 
 	static final byte EXCHANGES = 0;
 	static final byte IMPACTS = 1;
 
+	/** The maximum number of flow IDs in the `IN` clause of a query. */
+	private static final int MAX_FLOWS_PER_QUERY = 1000;
+
+	/** The number of updates after which a batch is executed. */
+	private static final int BATCH_SIZE = 1000;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
-	private final byte type;
+	final byte type;
 	private final Replacer replacer;
 
 	final Stats stats = new Stats();
 
+	/** The IDs of the processes or impact categories that were changed. */
+	final Set<Long> owners = new HashSet<>();
+
 	Cursor(byte type, Replacer replacer) {
 		this.type = type;
 		this.replacer = replacer;
 	}
 
 	public void run() {
-		try {
-
-			Connection con = replacer.db.createConnection();
+		try (Connection con = replacer.db.createConnection()) {
 			con.setAutoCommit(false);
-
-			Statement query = con.createStatement();
-			query.setCursorName(cursorName());
-			ResultSet cursor = query.executeQuery(querySQL());
-			PreparedStatement update = con.prepareStatement(updateSQL());
-
-			int total = 0;
-			int changed = 0;
-			while (cursor.next()) {
-				total++;
-
-				long flowID = cursor.getLong(1);
-				FlowMapEntry entry = replacer.entries.get(flowID);
-				if (entry == null)
-					continue;
-				Flow source = replacer.flows.get(entry.sourceFlow.flow.id);
-				Flow target = replacer.flows.get(entry.targetFlow.flow.id);
-				if (source == null || target == null)
-					continue;
-
-				// check flow property and unit of the source flow
-				FlowPropertyFactor propFactor = propFactor(
-						source, cursor.getLong("f_flow_property_factor"));
-				if (propFactor == null) {
-					stats.inc(source.id, Stats.FAILURE);
-					continue;
-				}
-				Unit unit = unit(propFactor.flowProperty, cursor.getLong("f_unit"));
-				if (unit == null) {
-					stats.inc(source.id, Stats.FAILURE);
-					continue;
+			try {
+				List<Long> flowIDs = new ArrayList<>(
+						replacer.entries.keySet());
+				int n = flowIDs.size();
+				int total = 0;
+				int changed = 0;
+				for (int i = 0; i < n; i += MAX_FLOWS_PER_QUERY) {
+					int end = Math.min(i + MAX_FLOWS_PER_QUERY, n);
+					List<Row> rows = select(con, flowIDs.subList(i, end));
+					total += rows.size();
+					changed += update(con, rows);
 				}
+				con.commit();
+				log.info("{} replaced flows in {} of {} selected rows",
+						name(), changed, total);
+			} catch (Exception e) {
+				con.rollback();
+				throw e;
+			}
+		} catch (Exception e) {
+			log.error("Flow replacement in " + name()
+					+ " failed; all changes were rolled back", e);
+			// nothing was changed in this table
+			owners.clear();
+			stats.replacements = 0;
+			stats.flowReplacements.clear();
+			for (Long flowID : replacer.entries.keySet()) {
+				stats.inc(flowID, Stats.FAILURE);
+			}
+		}
+	}
 
-				// calculate the conversion factor; not that the factor
-				// has the inverse meaning for exchanges than for LCIA factors
-				double factor = type == EXCHANGES
-						? entry.factor
-						: 1 / entry.factor;
-				if (propFactor.flowProperty.id != entry.sourceFlow.property.id
-						|| unit.id != entry.sourceFlow.unit.id) {
-					ConversionTable ct = replacer.conversions;
-					double pi = ct.getPropertyFactor(propFactor.id);
-					double ui = ct.getUnitFactor(unit.id);
-					double ps = ct.getPropertyFactor(
-							propFactor(source, entry.sourceFlow).id);
-					double us = ct.getUnitFactor(entry.sourceFlow.unit.id);
-					double y = (ui * ps) / (pi * us);
-					factor *= type == EXCHANGES ? y : 1 / y;
-				}
+	private List<Row> select(Connection con, List<Long> flowIDs)
+			throws Exception {
+		List<Row> rows = new ArrayList<>();
+		try (Statement query = con.createStatement();
+				ResultSet r = query.executeQuery(querySQL(flowIDs))) {
+			while (r.next()) {
+				Row row = new Row();
+				row.id = r.getLong("id");
+				row.owner = r.getLong("f_owner");
+				row.flow = r.getLong("f_flow");
+				row.unit = r.getLong("f_unit");
+				row.propertyFactor = r.getLong("f_flow_property_factor");
+				row.amount = r.getDouble(6);
+				row.formula = r.getString(7);
+				row.uncertainty = readUncertainty(r);
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
 
-				// check the target flow property
-				FlowPropertyFactor targetPropertyFactor = propFactor(
-						target, entry.targetFlow);
-				if (targetPropertyFactor == null) {
-					stats.inc(source.id, Stats.FAILURE);
+	private int update(Connection con, List<Row> rows) throws SQLException {
+		if (rows.isEmpty())
+			return 0;
+		int changed = 0;
+		int batch = 0;
+		try (PreparedStatement update = con.prepareStatement(updateSQL())) {
+			for (Row row : rows) {
+				if (!prepareUpdate(update, row))
 					continue;
+				update.addBatch();
+				changed++;
+				batch++;
+				if (batch >= BATCH_SIZE) {
+					update.executeBatch();
+					batch = 0;
 				}
+			}
+			if (batch > 0) {
+				update.executeBatch();
+			}
+		}
+		return changed;
+	}
 
-				// amount and formula have type specific names
-				double amount = cursor.getDouble(4);
-				String formula = cursor.getString(5);
-				Uncertainty uncertainty = readUncertainty(cursor);
-
-				update.setLong(1, target.id); // f_flow
-				update.setLong(2, entry.targetFlow.unit.id); // f_unit
-				update.setLong(3, targetPropertyFactor.id); // f_flow_property_factor
-				update.setDouble(4, factor * amount); // value
-
-				// resulting_amount_formula
-				if (Strings.nullOrEmpty(formula)) {
-					update.setString(5, null);
-				} else {
-					update.setString(5,
-							Double.toString(factor) + "* (" + formula + ")");
-				}
+	/**
+	 * Sets the parameters of the update statement for the given row. Returns
+	 * false when the flow of the row cannot be replaced.
+	 */
+	private boolean prepareUpdate(PreparedStatement update, Row row)
+			throws SQLException {
+		FlowMapEntry entry = replacer.entries.get(row.flow);
+		if (entry == null)
+			return false;
+		Flow source = replacer.flows.get(entry.sourceFlow.flow.id);
+		Flow target = replacer.flows.get(entry.targetFlow.flow.id);
+		if (source == null || target == null)
+			return false;
 
-				// uncertainty
-				updateUncertainty(update, factor, uncertainty);
+		// check flow property and unit of the source flow
+		FlowPropertyFactor propFactor = propFactor(source, row.propertyFactor);
+		if (propFactor == null) {
+			stats.inc(source.id, Stats.FAILURE);
+			return false;
+		}
+		Unit unit = unit(propFactor.flowProperty, row.unit);
+		if (unit == null) {
+			stats.inc(source.id, Stats.FAILURE);
+			return false;
+		}
 
-				update.executeUpdate();
-				changed++;
-				stats.inc(source.id, Stats.REPLACEMENT);
-			}
+		// calculate the conversion factor; not that the factor
+		// has the inverse meaning for exchanges than for LCIA factors
+		double factor = type == EXCHANGES
+				? entry.factor
+				: 1 / entry.factor;
+		if (propFactor.flowProperty.id != entry.sourceFlow.property.id
+				|| unit.id != entry.sourceFlow.unit.id) {
+			ConversionTable ct = replacer.conversions;
+			double pi = ct.getPropertyFactor(propFactor.id);
+			double ui = ct.getUnitFactor(unit.id);
+			double ps = ct.getPropertyFactor(
+					propFactor(source, entry.sourceFlow).id);
+			double us = ct.getUnitFactor(entry.sourceFlow.unit.id);
+			double y = (ui * ps) / (pi * us);
+			factor *= type == EXCHANGES ? y : 1 / y;
+		}
+
+		// check the target flow property
+		FlowPropertyFactor targetPropertyFactor = propFactor(
+				target, entry.targetFlow);
+		if (targetPropertyFactor == null) {
+			stats.inc(source.id, Stats.FAILURE);
+			return false;
+		}
 
-			cursor.close();
-			query.close();
-			update.close();
-			con.commit();
-			con.close();
+		update.setLong(1, target.id); // f_flow
+		update.setLong(2, entry.targetFlow.unit.id); // f_unit
+		update.setLong(3, targetPropertyFactor.id); // f_flow_property_factor
+		update.setDouble(4, factor * row.amount); // value
 
-			log.info("{} replaced flows in {} of {} rows",
-					cursorName(), changed, total);
-		} catch (Exception e) {
-			log.error("Flow replacement in " + cursorName() + " failed", e);
-			stats.inc(0, Stats.FAILURE);
+		// resulting_amount_formula
+		if (Strings.nullOrEmpty(row.formula)) {
+			update.setString(5, null);
+		} else {
+			update.setString(5,
+					Double.toString(factor) + "* (" + row.formula + ")");
 		}
+
+		// uncertainty
+		updateUncertainty(update, factor, row.uncertainty);
+		update.setLong(10, row.id);
+
+		owners.add(row.owner);
+		stats.inc(source.id, Stats.REPLACEMENT);
+		return true;
 	}
 
-	private String cursorName() {
+	private String name() {
 		return type == EXCHANGES
-				? "EXCHANGE_CURSOR"
-				: "IMPACT_CURSOR";
+				? "exchanges"
+				: "impact factors";
 	}
 
-	private String querySQL() {
-		String table;
+	/** Returns the table of the given cursor type. */
+	static String table(byte type) {
+		return type == EXCHANGES
+				? "tbl_exchanges"
+				: "tbl_impact_factors";
+	}
+
+	private String querySQL(List<Long> flowIDs) {
 		String value;
 		String formula;
+		String owner;
 		if (type == EXCHANGES) {
-			table = "tbl_exchanges";
 			value = "resulting_amount_value";
 			formula = "resulting_amount_formula";
+			owner = "f_owner";
 		} else {
-			table = "tbl_impact_factors";
 			value = "value";
 			formula = "formula";
+			owner = "f_impact_category";
+		}
+		StringBuilder ids = new StringBuilder();
+		for (int i = 0; i < flowIDs.size(); i++) {
+			if (i > 0)
+				ids.append(',');
+			ids.append(flowIDs.get(i));
 		}
 		return "SELECT "
+				+ "id, "
+				+ owner + " AS f_owner, "
 				+ "f_flow, "
 				+ "f_unit, "
 				+ "f_flow_property_factor, "
@@ -168,33 +254,21 @@ class Cursor implements Runnable {
 				+ "parameter1_value, "
 				+ "parameter2_value, "
 				+ "parameter3_value "
-				+ "FROM " + table + " "
-				+ "FOR UPDATE OF "
-				+ "f_flow, "
-				+ "f_unit, "
-				+ "f_flow_property_factor, "
-				+ value + " , "
-				+ formula + ", "
-				+ "distribution_type, "
-				+ "parameter1_value, "
-				+ "parameter2_value, "
-				+ "parameter3_value";
+				+ "FROM " + table(type) + " "
+				+ "WHERE f_flow IN (" + ids.toString() + ")";
 	}
 
 	private String updateSQL() {
-		String table;
 		String value;
 		String formula;
 		if (type == EXCHANGES) {
-			table = "tbl_exchanges";
 			value = "resulting_amount_value";
 			formula = "resulting_amount_formula";
 		} else {
-			table = "tbl_impact_factors";
 			value = "value";
 			formula = "formula";
 		}
-		return "UPDATE " + table + " "
+		return "UPDATE " + table(type) + " "
 				+ "SET f_flow = ? , "
 				+ "f_unit = ? , "
 				+ "f_flow_property_factor = ? , "
@@ -204,7 +278,7 @@ class Cursor implements Runnable {
 				+ "parameter1_value = ? , "
 				+ "parameter2_value = ? , "
 				+ "parameter3_value = ? "
-				+ "WHERE CURRENT OF " + cursorName();
+				+ "WHERE id = ?";
 	}
 
 	private Uncertainty readUncertainty(ResultSet cursor) throws Exception {
@@ -248,6 +322,8 @@ class Cursor implements Runnable {
 			update.setDouble(8, uncertainty.parameter2);
 			if (uncertainty.parameter3 != null) {
 				update.setDouble(9, uncertainty.parameter3);
+			} else {
+				update.setNull(9, Types.DOUBLE);
 			}
 		}
 	}
@@ -284,4 +360,16 @@ class Cursor implements Runnable {
 		return null;
 	}
 
-}
\ No newline at end of file
+	/** The values of a selected row that are required for the update. */
+	private static class Row {
+		long id;
+		long owner;
+		long flow;
+		long unit;
+		long propertyFactor;
+		double amount;
+		String formula;
+		Uncertainty uncertainty;
+	}
+
+}
@@ -1,6 +1,8 @@
 package org.openlca.app.tools.mapping.replacer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -8,13 +10,18 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
 import org.openlca.app.tools.mapping.model.DBProvider;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ImpactCategoryDao;
+import org.openlca.core.database.ProcessDao;
 import org.openlca.core.matrix.cache.ConversionTable;
 import org.openlca.core.model.Flow;
+import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.openlca.io.maps.FlowMapEntry;
 import org.openlca.io.maps.FlowRef;
 import org.openlca.io.maps.Status;
@@ -54,17 +61,17 @@ public class Replacer implements Runnable {
 
 		try {
 
-			log.info("start updatable cursors");
-			Cursor exchangeCursor = null;
-			Cursor impactCursor = null;
-			ExecutorService pool = Executors.newFixedThreadPool(4);
+			log.info("start cursors");
+			List<Cursor> cursors = new ArrayList<>();
 			if (conf.processes) {
-				exchangeCursor = new Cursor(Cursor.EXCHANGES, this);
-				pool.execute(exchangeCursor);
+				cursors.add(new Cursor(Cursor.EXCHANGES, this));
 			}
 			if (conf.methods) {
-				impactCursor = new Cursor(Cursor.IMPACTS, this);
-				pool.execute(impactCursor);
+				cursors.add(new Cursor(Cursor.IMPACTS, this));
+			}
+			ExecutorService pool = Executors.newFixedThreadPool(cursors.size());
+			for (Cursor cursor : cursors) {
+				pool.execute(cursor);
 			}
 
 			// waiting for the cursors to finish
@@ -75,6 +82,7 @@ public class Replacer implements Runnable {
 				log.info("waiting for cursors to finish; {} seconds", i * 10);
 			}
 			log.info("cursors finished");
+			evictCaches(cursors);
 
 			// TODO when products were replaced we also need to check
 			// whether these products are used in the quant. ref. of
@@ -85,15 +93,24 @@ public class Replacer implements Runnable {
 			// not required there.
 
 			// collect and log statistics
-			Stats stats = new Stats();
-			if (exchangeCursor != null) {
-				stats.add(exchangeCursor.stats);
-				exchangeCursor.stats.log("exchanges", flows);
+			Stats exchangeStats = new Stats();
+			Stats impactStats = new Stats();
+			for (Cursor cursor : cursors) {
+				if (cursor.type == Cursor.EXCHANGES) {
+					exchangeStats.add(cursor.stats);
+				} else {
+					impactStats.add(cursor.stats);
+				}
 			}
-			if (impactCursor != null) {
-				stats.add(impactCursor.stats);
-				impactCursor.stats.log("impacts", flows);
+			if (conf.processes) {
+				exchangeStats.log("exchanges", flows);
+			}
+			if (conf.methods) {
+				impactStats.log("impacts", flows);
 			}
+			Stats stats = new Stats();
+			stats.add(exchangeStats);
+			stats.add(impactStats);
 
 			boolean deleteMapped = false;
 			Set<Long> usedFlows = null;
@@ -134,6 +151,36 @@ public class Replacer implements Runnable {
 		}
 	}
 
+	/**
+	 * Removes the processes and impact categories that were changed by the
+	 * cursors from the caches.
+	 */
+	private void evictCaches(List<Cursor> cursors) {
+		Set<Long> processes = new HashSet<>();
+		Set<Long> impacts = new HashSet<>();
+		for (Cursor cursor : cursors) {
+			if (cursor.type == Cursor.EXCHANGES) {
+				processes.addAll(cursor.owners);
+			} else {
+				impacts.addAll(cursor.owners);
+			}
+		}
+		log.info("evict {} processes and {} impact categories from caches",
+				processes.size(), impacts.size());
+		if (!processes.isEmpty()) {
+			for (ProcessDescriptor d : new ProcessDao(db)
+					.getDescriptors(processes)) {
+				Cache.evict(d);
+			}
+		}
+		if (!impacts.isEmpty()) {
+			for (ImpactCategoryDescriptor d : new ImpactCategoryDao(db)
+					.getDescriptors(impacts)) {
+				Cache.evict(d);
+			}
+		}
+	}
+
 	private void buildIndices() {
 
 		// first persist all target flows in the database that
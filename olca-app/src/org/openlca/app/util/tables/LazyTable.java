@@ -0,0 +1,292 @@
+package org.openlca.app.util.tables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.openlca.app.App;
+
+/**
+ * A content provider for the virtual table viewers created with
+ * {@link Tables#createViewer}. The viewer only requests the elements of the
+ * visible rows from this provider; thus, the label provider is only called
+ * for these rows. Filtering and sorting is done in this model and not in the
+ * viewer (a lazy viewer does not support viewer filters and comparators).
+ * The rows are sorted by keys that are extracted once per row with the
+ * accessor functions of the sortable columns. The keys are always extracted
+ * in the UI thread as these functions are typically label providers that
+ * access model objects; for large tables, only the sorting of the keys is
+ * done in a background job.
+ */
+public class LazyTable<T> implements ILazyContentProvider {
+
+	/** Tables with less rows are sorted directly in the UI thread. */
+	private static final int SYNC_LIMIT = 10_000;
+
+	private final TableViewer viewer;
+	private final Map<Integer, Column<T>> columns = new HashMap<>();
+
+	private List<T> input = Collections.emptyList();
+	private List<T> rows = Collections.emptyList();
+	private Predicate<T> filter;
+
+	private int sortColumn = -1;
+	private boolean ascending = true;
+
+	/** Incremented on each change so that outdated sort results are ignored. */
+	private long version;
+
+	private LazyTable(TableViewer viewer) {
+		this.viewer = viewer;
+	}
+
+	/** Creates a lazy table model and binds it to the given viewer. */
+	public static <T> LazyTable<T> on(TableViewer viewer) {
+		LazyTable<T> model = new LazyTable<>(viewer);
+		viewer.setContentProvider(model);
+		viewer.setUseHashlookup(true);
+		return model;
+	}
+
+	/** Makes the given columns sortable by the given text accessor. */
+	public LazyTable<T> sortByText(Function<T, String> fn, int... cols) {
+		for (int col : cols) {
+			bind(new TextColumn<>(col, fn));
+		}
+		return this;
+	}
+
+	/**
+	 * Makes the given columns sortable by the text of the respective column
+	 * that is returned by the given function.
+	 */
+	public LazyTable<T> sortByColumnText(ColumnText<T> fn, int... cols) {
+		for (int col : cols) {
+			bind(new TextColumn<>(col, e -> fn.getText(e, col)));
+		}
+		return this;
+	}
+
+	/** Makes the given column sortable by the given number accessor. */
+	public LazyTable<T> sortByDouble(ToDoubleFunction<T> fn, int col) {
+		bind(new DoubleColumn<>(col, fn));
+		return this;
+	}
+
+	private void bind(Column<T> column) {
+		Table table = viewer.getTable();
+		if (column.index >= table.getColumnCount())
+			return;
+		columns.put(column.index, column);
+		TableColumn tc = table.getColumn(column.index);
+		tc.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				if (table.getSortColumn() == tc) {
+					ascending = !ascending;
+				} else {
+					ascending = true;
+				}
+				sortColumn = column.index;
+				table.setSortDirection(ascending ? SWT.UP : SWT.DOWN);
+				table.setSortColumn(tc);
+				update(rows);
+			}
+		});
+	}
+
+	/**
+	 * Sets the given predicate as filter of the table; null for no filter. The
+	 * filter is applied on the current input.
+	 */
+	public void setFilter(Predicate<T> filter) {
+		this.filter = filter;
+		setInput(input);
+	}
+
+	/** Sets the given list as input of the table. */
+	public void setInput(List<T> list) {
+		input = list == null ? Collections.emptyList() : list;
+		if (filter == null) {
+			update(new ArrayList<>(input));
+			return;
+		}
+		List<T> filtered = new ArrayList<>();
+		for (T e : input) {
+			if (filter.test(e)) {
+				filtered.add(e);
+			}
+		}
+		update(filtered);
+	}
+
+	/**
+	 * Refreshes the labels of the visible rows. Use this when the elements
+	 * were changed but not the list.
+	 */
+	public void refresh() {
+		viewer.refresh();
+	}
+
+	/** Returns the current rows of the table in their displayed order. */
+	public List<T> getRows() {
+		return Collections.unmodifiableList(rows);
+	}
+
+	private void update(List<T> list) {
+		long v = ++version;
+		Column<T> column = sortColumn < 0 ? null : columns.get(sortColumn);
+		if (column == null) {
+			show(list);
+			return;
+		}
+		boolean asc = ascending;
+		List<T> copy = new ArrayList<>(list);
+		Comparator<Integer> order = column.order(copy);
+		if (copy.size() < SYNC_LIMIT) {
+			show(sort(copy, order, asc));
+			return;
+		}
+		List<List<T>> result = new ArrayList<>(1);
+		App.run("Sort table", () -> result.add(sort(copy, order, asc)), () -> {
+			if (v != version || result.isEmpty())
+				return;
+			if (viewer.getTable().isDisposed())
+				return;
+			show(result.get(0));
+		});
+	}
+
+	private void show(List<T> list) {
+		rows = list;
+		viewer.setInput(list);
+		viewer.setItemCount(list.size());
+	}
+
+	@Override
+	public void updateElement(int index) {
+		if (index < 0 || index >= rows.size())
+			return;
+		viewer.replace(rows.get(index), index);
+	}
+
+	@Override
+	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+	}
+
+	@Override
+	public void dispose() {
+	}
+
+	/** Returns the text of an element in a column (e.g. a label provider). */
+	@FunctionalInterface
+	public interface ColumnText<T> {
+		String getText(T element, int column);
+	}
+
+	/**
+	 * Returns a sorted copy of the given list. The order compares the
+	 * positions of the elements in the list.
+	 */
+	static <T> List<T> sort(List<T> list, Comparator<Integer> order,
+			boolean ascending) {
+		Integer[] positions = new Integer[list.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
+		}
+		Arrays.sort(positions, order);
+		List<T> sorted = new ArrayList<>(list.size());
+		if (ascending) {
+			for (int i = 0; i < positions.length; i++) {
+				sorted.add(list.get(positions[i]));
+			}
+		} else {
+			for (int i = positions.length - 1; i >= 0; i--) {
+				sorted.add(list.get(positions[i]));
+			}
+		}
+		return sorted;
+	}
+
+	static abstract class Column<T> {
+
+		final int index;
+
+		Column(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Extracts the sort keys of the given list and returns an order of
+		 * the positions in this list. The returned comparator only uses the
+		 * extracted keys so that it can be used in another thread.
+		 */
+		abstract Comparator<Integer> order(List<T> list);
+	}
+
+	static class TextColumn<T> extends Column<T> {
+
+		private final Function<T, String> fn;
+
+		TextColumn(int index, Function<T, String> fn) {
+			super(index);
+			this.fn = fn;
+		}
+
+		@Override
+		Comparator<Integer> order(List<T> list) {
+			String[] keys = new String[list.size()];
+			for (int i = 0; i < keys.length; i++) {
+				T e = list.get(i);
+				String text = e == null ? null : fn.apply(e);
+				keys[i] = text == null ? null : text.toLowerCase();
+			}
+			return (i, j) -> {
+				String k1 = keys[i];
+				String k2 = keys[j];
+				if (k1 == null && k2 == null)
+					return 0;
+				if (k1 == null || k2 == null)
+					return k1 == null ? -1 : 1;
+				return k1.compareTo(k2);
+			};
+		}
+	}
+
+	static class DoubleColumn<T> extends Column<T> {
+
+		private final ToDoubleFunction<T> fn;
+
+		DoubleColumn(int index, ToDoubleFunction<T> fn) {
+			super(index);
+			this.fn = fn;
+		}
+
+		@Override
+		Comparator<Integer> order(List<T> list) {
+			double[] keys = new double[list.size()];
+			for (int i = 0; i < keys.length; i++) {
+				T e = list.get(i);
+				keys[i] = e == null
+						? Double.NEGATIVE_INFINITY
+						: fn.applyAsDouble(e);
+			}
+			return (i, j) -> Double.compare(keys[i], keys[j]);
+		}
+	}
+}
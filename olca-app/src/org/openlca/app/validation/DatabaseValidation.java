@@ -2,11 +2,13 @@ package org.openlca.app.validation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.openlca.app.M;
@@ -23,9 +25,16 @@ import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
+/**
+ * Validates the references of the data sets in the database. The data sets
+ * of the different model types are validated in parallel. The results of a
+ * model type can be received via the result handler as soon as they are
+ * available.
+ */
 public class DatabaseValidation {
 
 	private IProgressMonitor monitor;
+	private Consumer<List<ModelStatus>> handler;
 	private FlowChainValidation flowChainValidation;
 
 	public static DatabaseValidation with(IProgressMonitor monitor) {
@@ -34,6 +43,15 @@ public class DatabaseValidation {
 		return e;
 	}
 
+	/**
+	 * Sets a handler that receives the results of each model type when they
+	 * are available. The handler is called from the validation threads.
+	 */
+	public DatabaseValidation onResult(Consumer<List<ModelStatus>> handler) {
+		this.handler = handler;
+		return this;
+	}
+
 	public List<ModelStatus> evaluate(Collection<CategorizedDescriptor> descriptors) {
 		Map<ModelType, Set<Long>> byType = new HashMap<>();
 		for (CategorizedDescriptor descriptor : descriptors) {
@@ -43,19 +61,23 @@ public class DatabaseValidation {
 			}
 			forType.add(descriptor.id);
 		}
-		List<ModelStatus> result = new ArrayList<>();
+		List<ModelStatus> result = Collections.synchronizedList(new ArrayList<>());
 		if (monitor != null && !monitor.isCanceled())
 			monitor.beginTask(M.ValidatingDatabase, byType.size() * 3);
-		for (ModelType type : byType.keySet()) {
+		byType.keySet().parallelStream().forEach(type -> {
 			if (monitor != null && monitor.isCanceled())
-				continue;
+				return;
 			if (monitor != null)
 				monitor.subTask(Labels.modelType(type));
-			result.addAll(evaluate(type, byType.get(type)));
-		}
+			List<ModelStatus> forType = evaluate(type, byType.get(type));
+			result.addAll(forType);
+			if (handler != null && !forType.isEmpty()) {
+				handler.accept(forType);
+			}
+		});
 		if (monitor != null)
 			monitor.done();
-		return result;
+		return new ArrayList<>(result);
 	}
 
 	private List<ModelStatus> evaluate(ModelType type, Set<Long> ids) {
@@ -70,11 +92,10 @@ public class DatabaseValidation {
 		if (monitor != null && monitor.isCanceled())
 			return new ArrayList<>();
 		if (type == ModelType.PROCESS || type == ModelType.IMPACT_METHOD) {
-			if (flowChainValidation == null) {
-				flowChainValidation = new FlowChainValidation(Database.get());
-			}
-			notExisting.addAll(flowChainValidation.run(type.getModelClass(), references));
+			notExisting.addAll(getFlowChainValidation().run(
+					type.getModelClass(), references));
 		}
+		Map<Long, List<Reference>> byOwner = groupByOwner(notExisting);
 		Map<Long, Boolean> referenceSet = checkReferenceSet(type, ids);
 		if (monitor != null && monitor.isCanceled())
 			return new ArrayList<>();
@@ -83,8 +104,11 @@ public class DatabaseValidation {
 			if (monitor != null && monitor.isCanceled())
 				continue;
 			boolean validReferenceSet = referenceSet == null || referenceSet.get(id);
-			List<Reference> missing = filter(notExisting, id);
-			ModelStatus status = new ModelStatus(type, id, new ArrayList<>(missing), validReferenceSet);
+			List<Reference> missing = byOwner.get(id);
+			if (missing == null) {
+				missing = new ArrayList<>();
+			}
+			ModelStatus status = new ModelStatus(type, id, missing, validReferenceSet);
 			result.add(status);
 		}
 		if (monitor != null && !monitor.isCanceled())
@@ -107,12 +131,22 @@ public class DatabaseValidation {
 		}
 	}
 
-	private List<Reference> filter(Collection<Reference> references, long ownerId) {
-		List<Reference> filtered = new ArrayList<>();
-		for (Reference ref : references)
-			if (ref.ownerId == ownerId)
-				filtered.add(ref);
-		return filtered;
+	private synchronized FlowChainValidation getFlowChainValidation() {
+		if (flowChainValidation == null) {
+			flowChainValidation = new FlowChainValidation(Database.get());
+		}
+		return flowChainValidation;
+	}
+
+	private Map<Long, List<Reference>> groupByOwner(Collection<Reference> references) {
+		Map<Long, List<Reference>> byOwner = new HashMap<>();
+		for (Reference ref : references) {
+			List<Reference> list = byOwner.get(ref.ownerId);
+			if (list == null)
+				byOwner.put(ref.ownerId, list = new ArrayList<>());
+			list.add(ref);
+		}
+		return byOwner;
 	}
 
 	private Set<Reference> checkExistence(List<Reference> references) {
@@ -3,74 +3,87 @@ package org.openlca.app.validation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.references.IReferenceSearch.Reference;
 import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.Exchange;
-import org.openlca.core.model.Flow;
 import org.openlca.core.model.FlowPropertyFactor;
 import org.openlca.core.model.ImpactFactor;
 import org.openlca.core.model.ImpactMethod;
 import org.openlca.core.model.Process;
 import org.openlca.core.model.Unit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Checks that the flow property factors of exchanges and LCIA factors belong
+ * to the respective flows and that the units belong to the unit groups of the
+ * respective flow properties. The valid combinations are loaded with native
+ * SQL queries into primitive sets.
+ */
 class FlowChainValidation {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
 	// flow.id -> flowPropertyFactor.id
-	private final Map<Long, Set<Long>> factors = new HashMap<>();
+	private final TLongObjectHashMap<TLongHashSet> factors = new TLongObjectHashMap<>();
 	// flowProperty.id -> unit.id
-	private final Map<Long, Set<Long>> units = new HashMap<>();
+	private final TLongObjectHashMap<TLongHashSet> units = new TLongObjectHashMap<>();
 
 	FlowChainValidation(IDatabase database) {
-		for (Flow flow : new FlowDao(database).getAll()) {
-			Set<Long> factors = get(this.factors, flow.id);
-			for (FlowPropertyFactor factor : flow.flowPropertyFactors) {
-				factors.add(factor.id);
-				if (this.units.containsKey(factor.flowProperty.id))
-					continue;
-				Set<Long> units = get(this.units, factor.flowProperty.id);
-				for (Unit unit : factor.flowProperty.unitGroup.units) {
-					units.add(unit.id);
-				}
-			}
-		}
+		String factorQuery = "select f_flow, id from tbl_flow_property_factors";
+		load(database, factorQuery, factors);
+		String unitQuery = "select p.id, u.id from tbl_flow_properties p "
+				+ "inner join tbl_units u on p.f_unit_group = u.f_unit_group";
+		load(database, unitQuery, units);
 	}
 
-	private Set<Long> get(Map<Long, Set<Long>> map, long id) {
-		Set<Long> values = map.get(id);
-		if (values == null) {
-			map.put(id, values = new HashSet<>());
+	private void load(IDatabase database, String query,
+			TLongObjectHashMap<TLongHashSet> map) {
+		try {
+			NativeSql.on(database).query(query, r -> {
+				put(map, r.getLong(1), r.getLong(2));
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to load flow chain data: " + query, e);
 		}
-		return values;
 	}
 
-	private void put(Map<Long, Set<Long>> map, long id, long value) {
-		Set<Long> values = map.get(id);
+	private void put(TLongObjectHashMap<TLongHashSet> map, long id, long value) {
+		TLongHashSet values = map.get(id);
 		if (values == null) {
-			map.put(id, values = new HashSet<>());
+			map.put(id, values = new TLongHashSet());
 		}
 		values.add(value);
 	}
 
+	private boolean contains(TLongObjectHashMap<TLongHashSet> map, long id,
+			long value) {
+		TLongHashSet values = map.get(id);
+		return values != null && values.contains(value);
+	}
+
 	List<Reference> run(Class<? extends AbstractEntity> ownerType, Collection<Reference> references) {
 		List<FlowRefs> flowRefs = getRefs(ownerType, references);
 		List<Reference> broken = new ArrayList<>();
 		for (FlowRefs refs : flowRefs) {
 			if (refs.flowId == 0l || refs.factorId == 0l)
 				continue;
-			if (!factors.containsKey(refs.flowId) || !factors.get(refs.flowId).contains(refs.factorId)) {
+			if (!contains(factors, refs.flowId, refs.factorId)) {
 				broken.add(new Reference("flowPropertyFactor", FlowPropertyFactor.class, refs.factorId, ownerType,
 						refs.ownerId, refs.nestedProperty, refs.nestedOwnerType, refs.nestedOwnerId, false));
 			}
 			if (refs.factorId == 0l || refs.propertyId == 0l || refs.unitId == 0l)
 				continue;
-			if (!units.containsKey(refs.propertyId) || !units.get(refs.propertyId).contains(refs.unitId)) {
+			if (!contains(units, refs.propertyId, refs.unitId)) {
 				broken.add(new Reference("unit", Unit.class, refs.unitId, ownerType,
 						refs.ownerId, refs.nestedProperty, refs.nestedOwnerType, refs.nestedOwnerId, false));
 			}
@@ -89,7 +102,7 @@ class FlowChainValidation {
 			nestedProperty = "impactFactors";
 		}
 		Map<Long, FlowRefs> flowRefs = new HashMap<>();
-		Map<Long, Set<Long>> factorToOwner = new HashMap<>();
+		TLongObjectHashMap<TLongHashSet> factorToOwner = new TLongObjectHashMap<>();
 		Map<Long, Long> factorToProperty = new HashMap<>();
 		for (Reference ref : references) {
 			if (ref.property.equals("flowProperty")
@@ -118,10 +131,17 @@ class FlowChainValidation {
 			}
 		}
 		for (Long factorId : factorToProperty.keySet()) {
-			for (long ownerId : factorToOwner.get(factorId)) {
+			TLongHashSet owners = factorToOwner.get(factorId);
+			if (owners == null)
+				continue;
+			long propertyId = factorToProperty.get(factorId);
+			owners.forEach(ownerId -> {
 				FlowRefs refs = flowRefs.get(ownerId);
-				refs.propertyId = factorToProperty.get(factorId);
-			}
+				if (refs != null) {
+					refs.propertyId = propertyId;
+				}
+				return true;
+			});
 		}
 		return new ArrayList<>(flowRefs.values());
 	}
@@ -49,6 +49,7 @@ public class ValidationView extends ViewPart {
 	private static final Logger log = LoggerFactory.getLogger(ValidationView.class);
 	private static ValidationView instance;
 	private TreeViewer viewer;
+	private final List<ModelStatus> partialResult = new ArrayList<>();
 
 	public ValidationView() {
 		instance = this;
@@ -88,13 +89,19 @@ public class ValidationView extends ViewPart {
 		try {
 			ValidationView instance = (ValidationView) page.showView("views.problems");
 			List<ModelStatus> result = new ArrayList<>();
+			instance.viewer.setInput(new Object[0]);
 			ProgressMonitorDialog dialog = new ProgressMonitorDialog(UI.shell());
 			dialog.run(true, true, (monitor) -> {
 				monitor.beginTask(M.Initializing, IProgressMonitor.UNKNOWN);
 				Set<CategorizedDescriptor> descriptors = Navigator.collectDescriptors(selection);
-				DatabaseValidation validation = DatabaseValidation.with(monitor);
-				result.addAll(validation.evaluate(descriptors));
+				DatabaseValidation validation = DatabaseValidation.with(monitor)
+						.onResult(partial -> instance.showPartial(partial));
+				validation.evaluate(descriptors);
 			});
+			synchronized (instance.partialResult) {
+				result.addAll(instance.partialResult);
+				instance.partialResult.clear();
+			}
 			StatusList[] model = createModel(result);
 			instance.viewer.setInput(model);
 			if (model.length == 0)
@@ -104,6 +111,23 @@ public class ValidationView extends ViewPart {
 		}
 	}
 
+	/**
+	 * Adds the given results of a running validation to the view. This method
+	 * can be called from any thread.
+	 */
+	private void showPartial(List<ModelStatus> partial) {
+		StatusList[] model;
+		synchronized (partialResult) {
+			partialResult.addAll(partial);
+			model = createModel(partialResult);
+		}
+		viewer.getControl().getDisplay().asyncExec(() -> {
+			if (viewer.getControl().isDisposed())
+				return;
+			viewer.setInput(model);
+		});
+	}
+
 	public static void clear() {
 		if (instance == null)
 			return;
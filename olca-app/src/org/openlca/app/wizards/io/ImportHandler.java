@@ -1,44 +1,131 @@
 package org.openlca.app.wizards.io;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.openlca.app.M;
 import org.openlca.io.FileImport;
 import org.openlca.io.ImportEvent;
 import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
+/**
+ * Runs a file import in a separate thread and reports its progress. The
+ * events of the import are only counted in the import thread; the progress
+ * monitor is updated in fixed intervals from the calling thread with a
+ * {@link Progress} event that is posted on the same event bus. Thus, the
+ * import is not slowed down by updates of the user interface for each data
+ * set.
+ */
 public class ImportHandler {
 
+	/** The interval in milliseconds in which the progress is reported. */
+	private static final long UPDATE_INTERVAL = 500;
+
+	/**
+	 * The maximum time in milliseconds we wait for the import thread to stop
+	 * after the import was canceled.
+	 */
+	private static final long CANCEL_TIMEOUT = 5000;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private IProgressMonitor monitor;
-	private int cancelLookUpTime = 5000;
+
+	private final AtomicInteger count = new AtomicInteger();
+	private volatile String lastDataSet;
 
 	public ImportHandler(IProgressMonitor monitor) {
 		this.monitor = monitor;
 	}
 
 	@Subscribe
+	@AllowConcurrentEvents
 	public void handleEvent(ImportEvent event) {
-		monitor.subTask(Strings.cut(event.getDataSetName(), 50));
+		lastDataSet = event.getDataSetName();
+		count.incrementAndGet();
+	}
+
+	@Subscribe
+	public void handleProgress(Progress progress) {
+		if (progress.dataSet == null)
+			return;
+		String rate = String.format("%.1f", progress.rate);
+		monitor.subTask(Strings.cut(progress.dataSet, 50)
+				+ " (" + progress.count + " " + M.DataSets
+				+ ", " + rate + "/s)");
 	}
 
 	public void run(FileImport fileImport) {
 		EventBus bus = new EventBus();
 		bus.register(this);
 		fileImport.setEventBus(bus);
-		Thread thread = new Thread(fileImport);
+		Thread thread = new Thread(fileImport, "openLCA file import");
+		long start = System.currentTimeMillis();
 		thread.start();
-		while (!monitor.isCanceled() && thread.isAlive())
+		boolean canceled = false;
+		long cancelTime = 0;
+		while (thread.isAlive()) {
 			try {
-				thread.join(cancelLookUpTime);
-				if (monitor.isCanceled())
-					fileImport.cancel();
-			} catch (Exception e) {
-				log.error("failed to join import thread");
+				thread.join(UPDATE_INTERVAL);
+			} catch (InterruptedException e) {
+				log.error("interrupted while waiting for import thread", e);
+				canceled = true;
+				fileImport.cancel();
+				break;
+			}
+			if (!canceled && monitor.isCanceled()) {
+				// we wait a limited time for the import thread to stop so
+				// that the import is normally not running anymore when the
+				// wizard finishes
+				canceled = true;
+				cancelTime = System.currentTimeMillis();
+				fileImport.cancel();
+				monitor.subTask(M.CancelingImport);
+				continue;
+			}
+			if (canceled) {
+				if (System.currentTimeMillis() - cancelTime > CANCEL_TIMEOUT) {
+					log.warn("import thread did not stop within {} ms after"
+							+ " it was canceled", CANCEL_TIMEOUT);
+					break;
+				}
+				continue;
 			}
+			bus.post(progress(start));
+		}
+		Progress last = progress(start);
+		log.info("imported {} data sets in {} s ({} data sets/s); canceled={}",
+				last.count, last.seconds, last.rate, canceled);
+	}
+
+	private Progress progress(long start) {
+		Progress p = new Progress();
+		p.count = count.get();
+		p.dataSet = lastDataSet;
+		p.seconds = (System.currentTimeMillis() - start) / 1000.0;
+		p.rate = p.seconds > 0 ? p.count / p.seconds : 0;
+		return p;
+	}
+
+	/** Describes the current progress of an import. */
+	public static class Progress {
+
+		/** The number of imported data sets. */
+		public int count;
+
+		/** The name of the last imported data set. */
+		public String dataSet;
+
+		/** The time in seconds since the import was started. */
+		public double seconds;
+
+		/** The number of imported data sets per second. */
+		public double rate;
 	}
 
 }